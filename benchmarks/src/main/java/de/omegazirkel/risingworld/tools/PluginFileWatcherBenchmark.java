@@ -0,0 +1,89 @@
+package de.omegazirkel.risingworld.tools;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.omegazirkel.risingworld.tools.bench.BenchSupport;
+
+/**
+ * Dispatch cost of {@link PluginFileWatcher#handleFileEvent} for jar, settings
+ * and other files. Lives in the tools package because the method is
+ * package-private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PluginFileWatcherBenchmark {
+
+    @Param({ "1", "20" })
+    public int listeners;
+
+    private PluginFileWatcher watcher;
+    private PluginReloadDebouncer debouncer;
+    private Path jar;
+    private Path settings;
+    private Path other;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchSupport.silenceConsole();
+        Path root = Files.createTempDirectory("oz-bench-watcher");
+        Path pluginDir = Files.createDirectories(root.resolve("SomePlugin"));
+        jar = pluginDir.resolve("SomePlugin.jar");
+        settings = pluginDir.resolve("settings.properties");
+        other = pluginDir.resolve("i18n").resolve("en.properties");
+
+        // never fires within a benchmark iteration
+        debouncer = new PluginReloadDebouncer(() -> {
+        }, 1, TimeUnit.HOURS);
+        watcher = new PluginFileWatcher(root, debouncer);
+        for (int i = 0; i < listeners; i++) {
+            FileChangeListener listener = new FileChangeListener() {
+            };
+            watcher.addListener(listener);
+            if (i == 0) {
+                watcher.addSettingsFile(settings, listener);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        watcher.close();
+        debouncer.shutdown();
+    }
+
+    @Benchmark
+    public void jarChanged() {
+        watcher.handleFileEvent(StandardWatchEventKinds.ENTRY_MODIFY, jar);
+    }
+
+    @Benchmark
+    public void settingsChanged() {
+        watcher.handleFileEvent(StandardWatchEventKinds.ENTRY_MODIFY, settings);
+    }
+
+    @Benchmark
+    public void otherFileChanged() {
+        watcher.handleFileEvent(StandardWatchEventKinds.ENTRY_MODIFY, other);
+    }
+}
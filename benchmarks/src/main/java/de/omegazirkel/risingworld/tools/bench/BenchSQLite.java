@@ -0,0 +1,26 @@
+package de.omegazirkel.risingworld.tools.bench;
+
+import de.omegazirkel.risingworld.tools.db.SQLite;
+import de.omegazirkel.risingworld.tools.db.SQLiteProfile;
+import net.risingworld.api.Plugin;
+import net.risingworld.api.database.Database;
+
+/**
+ * {@link SQLite} on a plain JDBC connection in the plugin directory
+ */
+public class BenchSQLite extends SQLite {
+
+    public BenchSQLite(Plugin plugin, SQLiteProfile profile) {
+        super(plugin, profile);
+    }
+
+    @Override
+    protected String getDatabasePath() {
+        return getPlugin().getPath() + "/bench.db";
+    }
+
+    @Override
+    protected Database openDatabase(String path) {
+        return new JdbcDatabase(path);
+    }
+}
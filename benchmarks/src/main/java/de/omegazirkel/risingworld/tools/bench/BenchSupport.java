@@ -0,0 +1,22 @@
+package de.omegazirkel.risingworld.tools.bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Helpers shared by the benchmarks
+ */
+public final class BenchSupport {
+
+    private BenchSupport() {
+    }
+
+    /**
+     * Sends System.out to nowhere, has to be called before the first OZLogger is
+     * created so the console appender of oz-log4j2.xml does not flood the
+     * benchmark output. File appenders keep writing to Logs/.
+     */
+    public static void silenceConsole() {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+}
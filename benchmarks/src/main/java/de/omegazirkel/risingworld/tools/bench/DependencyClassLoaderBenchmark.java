@@ -0,0 +1,134 @@
+package de.omegazirkel.risingworld.tools.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.omegazirkel.risingworld.tools.DependencyClassLoader;
+
+/**
+ * The lib/ class loader before (one URLClassLoader over all jars) and after
+ * ({@link DependencyClassLoader} with its package index): creating the loader
+ * plus a ServiceLoader style lookup, and the lookups alone on a warm loader.
+ *
+ * Uses generated jars (40 jars with 10 packages each, every jar registers one
+ * service), so the numbers do not depend on the lib/ directory of a server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DependencyClassLoaderBenchmark {
+    private static final int JARS = 40;
+    private static final int PACKAGES = 10;
+    private static final String SERVICE = "META-INF/services/bench.Service";
+
+    private List<Path> jars;
+    private URL[] urls;
+    private URLClassLoader urlLoader;
+    private DependencyClassLoader indexedLoader;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchSupport.silenceConsole();
+        Path dir = Files.createTempDirectory("oz-bench-lib");
+        jars = new ArrayList<>();
+        for (int j = 0; j < JARS; j++) {
+            Path jar = dir.resolve("lib" + j + ".jar");
+            try (OutputStream out = Files.newOutputStream(jar); JarOutputStream jos = new JarOutputStream(out)) {
+                for (int p = 0; p < PACKAGES; p++) {
+                    for (int r = 0; r < 10; r++) {
+                        jos.putNextEntry(new JarEntry("lib" + j + "/pkg" + p + "/Res" + r + ".txt"));
+                        jos.write(("jar " + j).getBytes(StandardCharsets.UTF_8));
+                        jos.closeEntry();
+                    }
+                }
+                jos.putNextEntry(new JarEntry(SERVICE));
+                jos.write(("lib" + j + ".Impl\n").getBytes(StandardCharsets.UTF_8));
+                jos.closeEntry();
+            }
+            jars.add(jar);
+        }
+        urls = new URL[JARS];
+        for (int j = 0; j < JARS; j++) {
+            urls[j] = jars.get(j).toUri().toURL();
+        }
+        urlLoader = new URLClassLoader(urls, ClassLoader.getPlatformClassLoader());
+        indexedLoader = new DependencyClassLoader(jars, ClassLoader.getPlatformClassLoader());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        urlLoader.close();
+        indexedLoader.close();
+    }
+
+    // what a connect does: all service registrations, then a resource of the
+    // last jar and one that does not exist
+    private static int lookup(ClassLoader loader) throws IOException {
+        int found = Collections.list(loader.getResources(SERVICE)).size();
+        if (loader.getResource("lib" + (JARS - 1) + "/pkg5/Res5.txt") != null) {
+            found++;
+        }
+        if (loader.getResource("missing/Res.txt") != null) {
+            found++;
+        }
+        return found;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 20)
+    public int startupUrlClassLoader() throws IOException {
+        try (URLClassLoader loader = new URLClassLoader(urls, ClassLoader.getPlatformClassLoader())) {
+            return lookup(loader);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 20)
+    public int startupIndexed() throws IOException {
+        try (DependencyClassLoader loader = new DependencyClassLoader(jars, ClassLoader.getPlatformClassLoader())) {
+            return lookup(loader);
+        }
+    }
+
+    @Benchmark
+    public int lookupUrlClassLoader() throws IOException {
+        return lookup(urlLoader);
+    }
+
+    @Benchmark
+    public int lookupIndexed() throws IOException {
+        return lookup(indexedLoader);
+    }
+}
@@ -0,0 +1,68 @@
+package de.omegazirkel.risingworld.tools.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.omegazirkel.risingworld.tools.I18n;
+
+/**
+ * {@link I18n#get(String, String)} for a present language, the fallback to the
+ * default language and a missing key
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class I18nBenchmark {
+    private static final int KEYS = 200;
+
+    private I18n t;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchSupport.silenceConsole();
+        StubPlugin plugin = new StubPlugin("I18nBenchmark");
+        Path dir = Path.of(plugin.getPath(), "i18n");
+        Files.createDirectories(dir);
+        StringBuilder en = new StringBuilder();
+        StringBuilder de = new StringBuilder();
+        for (int i = 0; i < KEYS; i++) {
+            en.append("MSG_").append(i).append("=<color=#F00000>Message</color> number ").append(i).append('\n');
+            de.append("MSG_").append(i).append("=<color=#F00000>Nachricht</color> Nummer ").append(i).append('\n');
+        }
+        Files.writeString(dir.resolve("en.properties"), en, StandardCharsets.UTF_8);
+        Files.writeString(dir.resolve("de.properties"), de, StandardCharsets.UTF_8);
+        t = new I18n(plugin);
+    }
+
+    @Benchmark
+    public String getTranslated() {
+        return t.get("MSG_42", "de");
+    }
+
+    @Benchmark
+    public String getDefaultLanguageFallback() {
+        return t.get("MSG_42", "fr");
+    }
+
+    @Benchmark
+    public String getMissingKey() {
+        return t.get("MSG_UNKNOWN", "de");
+    }
+}
@@ -0,0 +1,69 @@
+package de.omegazirkel.risingworld.tools.bench;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import net.risingworld.api.database.Database;
+import net.risingworld.api.database.DatabaseType;
+
+/**
+ * Plain JDBC implementation of the server {@link Database} interface
+ */
+public class JdbcDatabase implements Database {
+    private final Connection conn;
+
+    public JdbcDatabase(String path) {
+        try {
+            this.conn = DriverManager.getConnection("jdbc:sqlite:" + path);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public DatabaseType getType() {
+        return DatabaseType.SQLite;
+    }
+
+    @Override
+    public Connection getConnection() {
+        return conn;
+    }
+
+    @Override
+    public void execute(String query) {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(query);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void executeUpdate(String query) {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(query);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public ResultSet executeQuery(String query) throws SQLException {
+        Statement stmt = conn.createStatement();
+        stmt.closeOnCompletion();
+        return stmt.executeQuery(query);
+    }
+
+    @Override
+    public void close() {
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package de.omegazirkel.risingworld.tools.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Level;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.omegazirkel.risingworld.tools.OZLogger;
+
+/**
+ * {@link OZLogger#info(String)} through the oz-log4j2.xml appenders, and a call
+ * that is filtered by the logger level
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OZLoggerBenchmark {
+    private OZLogger logger;
+    private OZLogger filtered;
+    private int counter;
+
+    @Setup
+    public void setup() {
+        BenchSupport.silenceConsole();
+        logger = OZLogger.getInstance("OZ.Bench.Logger");
+        filtered = OZLogger.getInstance("OZ.Bench.Filtered");
+        filtered.setLevel(Level.WARN);
+    }
+
+    @TearDown
+    public void tearDown() {
+        OZLogger.shutdownAll();
+    }
+
+    @Benchmark
+    public void info() {
+        logger.info("Player joined the server: " + (counter++));
+    }
+
+    @Benchmark
+    public void infoFilteredByLevel() {
+        filtered.info("Player joined the server: " + (counter++));
+    }
+}
@@ -0,0 +1,75 @@
+package de.omegazirkel.risingworld.tools.bench;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.omegazirkel.risingworld.tools.db.SQLite;
+import de.omegazirkel.risingworld.tools.db.SQLiteProfile;
+
+/**
+ * Insert and select throughput of the default connection profile (rollback
+ * journal) compared to {@link SQLiteProfile#tuned()} (WAL)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SQLiteProfileBenchmark {
+    private static final int ROWS = 10_000;
+
+    @Param({ "default", "tuned" })
+    public String profile;
+
+    private SQLite db;
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        db = new BenchSQLite(new StubPlugin("SQLiteProfileBenchmark"),
+                "tuned".equals(profile) ? SQLiteProfile.tuned() : SQLiteProfile.defaults());
+        db.execute("CREATE TABLE IF NOT EXISTS stats (id INTEGER PRIMARY KEY, player TEXT, value INTEGER)");
+        db.execute("BEGIN");
+        for (int i = 0; i < ROWS; i++) {
+            db.executeUpdate("INSERT INTO stats (id, player, value) VALUES (" + i + ", 'player" + i + "', " + i + ")");
+        }
+        db.execute("COMMIT");
+        nextId = ROWS;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.destroy();
+    }
+
+    @Benchmark
+    public void insert() {
+        long id = nextId++;
+        db.executeUpdate("INSERT INTO stats (id, player, value) VALUES (" + id + ", 'player" + id + "', " + id + ")");
+    }
+
+    @Benchmark
+    public long selectByKey() throws SQLException {
+        int id = ThreadLocalRandom.current().nextInt(ROWS);
+        try (ResultSet rs = db.executeQuery("SELECT value FROM stats WHERE id = " + id)) {
+            return rs.next() ? rs.getLong(1) : -1;
+        }
+    }
+}
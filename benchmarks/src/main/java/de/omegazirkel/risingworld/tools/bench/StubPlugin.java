@@ -0,0 +1,48 @@
+package de.omegazirkel.risingworld.tools.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import net.risingworld.api.Plugin;
+
+/**
+ * Stand-in for a Rising World plugin, only the non-final methods that do not
+ * need a running server are overridden
+ */
+public class StubPlugin extends Plugin {
+    private final String name;
+    private final Path path;
+
+    public StubPlugin(String name) {
+        this.name = name;
+        try {
+            this.path = Files.createTempDirectory("oz-bench-" + name);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void onEnable() {
+    }
+
+    @Override
+    public void onDisable() {
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getDescription(String key) {
+        return "version".equals(key) ? "bench" : name;
+    }
+
+    @Override
+    public String getPath() {
+        return path.toString();
+    }
+}
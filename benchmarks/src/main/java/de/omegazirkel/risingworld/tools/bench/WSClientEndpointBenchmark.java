@@ -0,0 +1,96 @@
+package de.omegazirkel.risingworld.tools.bench;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.glassfish.tyrus.server.Server;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.omegazirkel.risingworld.tools.WSClientEndpoint;
+import jakarta.websocket.OnMessage;
+import jakarta.websocket.server.ServerEndpoint;
+
+/**
+ * {@link WSClientEndpoint#send(String)} against a local Tyrus server that only
+ * counts the received messages
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WSClientEndpointBenchmark {
+    private static final int PORT = 18025;
+
+    private Server server;
+    private WSClientEndpoint client;
+    private String message;
+    private ByteBuffer binary;
+
+    /**
+     * Stand-in for the relay server, does not answer
+     */
+    @ServerEndpoint("/bench")
+    public static class SinkEndpoint {
+        static final LongAdder RECEIVED = new LongAdder();
+
+        @OnMessage
+        public void onText(String message) {
+            RECEIVED.increment();
+        }
+
+        @OnMessage
+        public void onBinary(ByteBuffer buffer) {
+            RECEIVED.increment();
+        }
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        BenchSupport.silenceConsole();
+        server = new Server("localhost", PORT, "/", new HashMap<>(), SinkEndpoint.class);
+        server.start();
+
+        client = WSClientEndpoint.getInstance("ws://localhost:" + PORT + "/bench");
+        long deadline = System.currentTimeMillis() + 10_000;
+        // the first send starts the async connect
+        while (!client.send("hello") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        if (!client.isConnected()) {
+            throw new IllegalStateException("WebSocket stand-in did not accept the connection");
+        }
+
+        message = "{\"type\":\"chat\",\"player\":\"Devidian\",\"message\":\"" + "x".repeat(200) + "\"}";
+        binary = ByteBuffer.allocate(256);
+    }
+
+    @TearDown
+    public void tearDown() {
+        WSClientEndpoint.shutdownAll();
+        server.stop();
+    }
+
+    @Benchmark
+    public boolean sendText() {
+        return client.send(message);
+    }
+
+    @Benchmark
+    public boolean sendBinary() {
+        return client.send(binary.duplicate());
+    }
+}
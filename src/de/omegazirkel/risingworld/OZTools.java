@@ -1,24 +1,47 @@
 
 package de.omegazirkel.risingworld;
 
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Properties;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import org.apache.logging.log4j.Level;
+
+import de.omegazirkel.risingworld.tools.DependencyClassLoader;
 import de.omegazirkel.risingworld.tools.FileChangeListener;
+import de.omegazirkel.risingworld.tools.HashedTimerWheel;
+import de.omegazirkel.risingworld.tools.MainThreadQueue;
 import de.omegazirkel.risingworld.tools.OZLogger;
+import de.omegazirkel.risingworld.tools.OZScheduler;
 import de.omegazirkel.risingworld.tools.PluginFileWatcher;
 import de.omegazirkel.risingworld.tools.PluginReloadDebouncer;
+import de.omegazirkel.risingworld.tools.Settings;
+import de.omegazirkel.risingworld.tools.SettingsFile;
 import de.omegazirkel.risingworld.tools.WSClientEndpoint;
+import de.omegazirkel.risingworld.tools.db.SQLite;
+import de.omegazirkel.risingworld.tools.db.SQLiteProfile;
+import de.omegazirkel.risingworld.tools.db.SQLiteQueryStats;
+import de.omegazirkel.risingworld.tools.events.OZEventBus;
+import de.omegazirkel.risingworld.tools.http.OZHttpClient;
+import de.omegazirkel.risingworld.tools.log.DiscordLogAppender;
+import de.omegazirkel.risingworld.tools.log.LogEntry;
+import de.omegazirkel.risingworld.tools.log.RecentLogAppender;
+import de.omegazirkel.risingworld.tools.metrics.Metrics;
 import net.risingworld.api.Plugin;
 import net.risingworld.api.Server;
+import net.risingworld.api.events.EventMethod;
 import net.risingworld.api.events.Listener;
+import net.risingworld.api.events.Threading;
+import net.risingworld.api.events.general.InputEvent;
+import net.risingworld.api.events.general.UpdateEvent;
 
 /**
  *
@@ -33,19 +56,53 @@ public class OZTools extends Plugin implements Listener, FileChangeListener {
         return OZLogger.getInstance("OZ.Tools");
     }
 
-    static int logLevel = 0;
-    static boolean reloadOnChange = false;
+    private SettingsFile<Config> settings;
+
+    private static final Pattern DURATION = Pattern.compile("(\\d+)([smhd])");
+
+    /**
+     * Parsed settings.properties, replaced as a whole on change
+     */
+    record Config(int logLevel, boolean reloadOnChange, SQLiteProfile sqliteProfile, long slowQueryMs,
+            long mainThreadBudgetMicros, long metricsDumpInterval, Path metricsFile, String discordWebhookUrl,
+            List<String> discordLoggers, String discordLevel, int discordMessagesPerMinute, long discordFlushMs,
+            OZHttpClient.Options http, int recentLogCapacity) {
+
+        static Config of(Settings s) {
+            String dumpFile = s.getString("metrics.dumpFile", "");
+            return new Config(
+                    s.getInt("logLevel", 0),
+                    s.getBoolean("reloadOnChange", false),
+                    // default connection profile for all plugins using tools.db.SQLite
+                    SQLiteProfile.fromProperties(s.toProperties()),
+                    s.getLong("sqlite.slowQueryMs", 100),
+                    (long) (s.getDouble("mainThread.budgetMs", 2) * 1000),
+                    s.getLong("metrics.dumpInterval", 0),
+                    dumpFile.isEmpty() ? null : Paths.get(dumpFile),
+                    s.getString("discord.webhookUrl", ""),
+                    s.getList("discord.loggers"),
+                    s.getString("discord.level", "WARN"),
+                    s.getInt("discord.messagesPerMinute", 20),
+                    s.getLong("discord.flushMs", 2000),
+                    OZHttpClient.Options.of(s),
+                    s.getInt("log.recent.capacity", RecentLogAppender.DEFAULT_CAPACITY));
+        }
+    }
 
     /**
      *
      */
     @Override
     public void onEnable() {
-        initSettings();
         // Ensure all subsystems are out of shutdown mode for plugin reloads.
         OZLogger.resetShutdownMode();
+        initSettings();
+
+        // index the jars in lib/ once for the tools and all plugins
+        DependencyClassLoader.init(Paths.get(getPath() != null ? getPath() : ".", "lib"), OZTools.class.getClassLoader());
 
         WSClientEndpoint.initLogger();
+        registerEventListener(this);
 
         // Register the shutdown hook only once for the entire lifetime of the JVM.
         if (shutdownHookRegistered.compareAndSet(false, true)) {
@@ -55,14 +112,14 @@ public class OZTools extends Plugin implements Listener, FileChangeListener {
 
         // Debounce: reload all plugins after 10 seconds from the last jar change
         debouncer = new PluginReloadDebouncer(() -> {
-            if (!reloadOnChange) {
+            if (!settings.get().reloadOnChange()) {
                 logger().warn("⚠️ jar changed but plugin reloading on change is deactivated, see settings.properties");
                 return;
             }
             logger().info("ℹ️ Detected jar changes, reloading all plugins...");
-            this.executeDelayed(5, () -> {
-                Server.sendInputCommand("reloadplugins");
-            });
+            OZScheduler.getInstance("OZ.Tools").schedule(() -> {
+                MainThreadQueue.submit(MainThreadQueue.Priority.HIGH, () -> Server.sendInputCommand("reloadplugins"));
+            }, 5, TimeUnit.SECONDS);
         }, 10, TimeUnit.SECONDS);
 
         // Watcher start
@@ -112,40 +169,146 @@ public class OZTools extends Plugin implements Listener, FileChangeListener {
             logger().info("Reload debouncer shut down.");
         }
 
+        Metrics.stopDump();
+
         // 2. Shut down all WebSocket clients
         WSClientEndpoint.shutdownAll();
 
+        SQLiteQueryStats.logSummary(SQLite.logger(), 10);
+
+        // sends the buffered log lines before the scheduler and the loggers stop
+        DiscordLogAppender.shutdown();
+
+        // running requests of all plugins get a few seconds to complete
+        OZHttpClient.shutdown();
+
+        // handlers of reloaded plugins must not receive events anymore
+        OZEventBus.clear();
+
+        // tasks of reloaded plugins must not run anymore
+        MainThreadQueue.clear();
+
+        // flushes key/value stores and write queues while their writers still run
+        SQLite.destroyAll();
+
+        // timeouts of reloaded plugins must not fire, the ticker stops with the scheduler below
+        HashedTimerWheel.resetShared();
+
+        // cancels the tasks of the tools and all plugins, the databases were flushed above
+        int owners = OZScheduler.shutdownAll();
+        logger().info("Scheduler shut down for " + owners + " owners.");
+
+        // closes the lib/ jars, the next onEnable indexes them again
+        DependencyClassLoader.shutdown();
+
         // 3. Shut down the logging framework as the very last step
         // This now only stops the contexts, but leaves Log4j running for reloads.
         OZLogger.shutdownAll();
     }
 
     private void initSettings() {
-        initSettings((getPath() != null ? getPath() : ".") + "/settings.properties");
+        settings = new SettingsFile<>(Paths.get(getPath() != null ? getPath() : ".", "settings.properties"),
+                Config::of);
+        settings.addListener((oldConfig, newConfig, changedKeys) -> applySettings(newConfig, changedKeys));
+        applySettings(settings.get(), null);
     }
 
-    private void initSettings(String filePath) {
-        Properties settings = new Properties();
-        FileInputStream in;
-        try {
-            in = new FileInputStream(filePath);
-            settings.load(new InputStreamReader(in, "UTF8"));
-            in.close();
-            // fill global values
-            logLevel = Integer.parseInt(settings.getProperty("logLevel", "0"));
-            reloadOnChange = settings.getProperty("reloadOnChange", "false").contentEquals("true");
-        } catch (IOException ex) {
-            logger().fatal("❌ IOException on initSettings: " + ex.getMessage());
-            // e.printStackTrace();
-        } catch (NumberFormatException ex) {
-            logger().fatal("❌ NumberFormatException on initSettings: " + ex.getMessage());
-        } catch (Exception ex) {
-            logger().fatal("❌ Exception on initSettings: " + ex.getMessage());
+    // pushes the global values into the tools subsystems, changedKeys is null on enable
+    private void applySettings(Config config, Set<String> changedKeys) {
+        SQLite.setDefaultProfile(config.sqliteProfile());
+        SQLiteQueryStats.setSlowQueryThreshold(config.slowQueryMs());
+        MainThreadQueue.setBudget(config.mainThreadBudgetMicros());
+        Metrics.startDump(config.metricsDumpInterval(), config.metricsFile());
+        OZHttpClient.start(config.http());
+        RecentLogAppender.setCapacity(config.recentLogCapacity());
+        if (changedKeys == null || changedKeys.stream().anyMatch(key -> key.startsWith("discord."))) {
+            DiscordLogAppender.configure(config.discordWebhookUrl(), config.discordLoggers(),
+                    Level.toLevel(config.discordLevel(), Level.WARN), config.discordMessagesPerMinute(),
+                    config.discordFlushMs());
+        }
+    }
+
+    /**
+     * Runs the main thread queue within its time budget
+     *
+     * @param event
+     */
+    @EventMethod(Threading.Sync)
+    public void onUpdate(UpdateEvent event) {
+        MainThreadQueue.runTick();
+    }
+
+    /**
+     * Server console commands:
+     *
+     * <pre>
+     * oztools metrics [prefix]   show metrics, e.g. "oztools metrics ws."
+     * oztools metrics dump       write a snapshot to the metrics log/file now
+     * oztools logs [logger|prefix*] [level] [since] [count]
+     *                            recent log lines from memory, e.g. "oztools logs OZ.Tools* warn 10m"
+     * </pre>
+     *
+     * @param event
+     */
+    @EventMethod
+    public void onConsoleInput(InputEvent event) {
+        String[] cmd = event.getInput().trim().split("\\s+");
+        if (cmd.length < 2 || !cmd[0].equalsIgnoreCase("oztools")) {
+            return;
+        }
+        event.setCancelled(true);
+        if (cmd[1].equalsIgnoreCase("metrics")) {
+            if (cmd.length > 2 && cmd[2].equalsIgnoreCase("dump")) {
+                Metrics.dump(settings.get().metricsFile());
+                return;
+            }
+            String prefix = cmd.length > 2 ? cmd[2] : "";
+            for (String line : Metrics.format(prefix)) {
+                logger().info(line);
+            }
+        } else if (cmd[1].equalsIgnoreCase("logs")) {
+            printRecentLogs(cmd);
+        } else {
+            logger().info("Usage: oztools metrics [prefix|dump]");
+            logger().info("       oztools logs [logger|prefix*] [level] [since e.g. 10m] [count]");
+        }
+    }
+
+    private void printRecentLogs(String[] cmd) {
+        String loggers = null;
+        Level level = null;
+        Duration since = null;
+        int count = 50;
+        for (int i = 2; i < cmd.length; i++) {
+            String arg = cmd[i];
+            Matcher duration = DURATION.matcher(arg.toLowerCase());
+            if (arg.matches("\\d+")) {
+                count = Integer.parseInt(arg);
+            } else if (duration.matches()) {
+                long value = Long.parseLong(duration.group(1));
+                since = switch (duration.group(2)) {
+                    case "s" -> Duration.ofSeconds(value);
+                    case "m" -> Duration.ofMinutes(value);
+                    case "h" -> Duration.ofHours(value);
+                    default -> Duration.ofDays(value);
+                };
+            } else if (Level.getLevel(arg.toUpperCase()) != null) {
+                level = Level.getLevel(arg.toUpperCase());
+            } else {
+                loggers = arg;
+            }
+        }
+        List<LogEntry> entries = RecentLogAppender.query(loggers, level, since, count);
+        // console only, logging them would copy them into the OZ.Tools log and buffer
+        for (LogEntry entry : entries) {
+            logger().console(entry.format());
         }
+        logger().console(entries.size() + " log lines from " + RecentLogAppender.getLoggerNames().size()
+                + " loggers (last " + RecentLogAppender.getCapacity() + " per logger)");
     }
 
     @Override
     public void onSettingsChanged(Path settingsPath) {
-        initSettings(settingsPath.toString());
+        settings.reload();
     }
 }
\ No newline at end of file
@@ -0,0 +1,97 @@
+package de.omegazirkel.risingworld.tools;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import de.omegazirkel.risingworld.tools.metrics.Counter;
+import de.omegazirkel.risingworld.tools.metrics.Metrics;
+import net.risingworld.api.Server;
+import net.risingworld.api.objects.Player;
+
+/**
+ * Sends a message to all players, rendered once per language instead of once
+ * per player.
+ *
+ * The players are sent to in batches on the {@link MainThreadQueue}, so a
+ * broadcast to a full server is spread over several ticks if the time budget
+ * is used up. Call it from the server thread, e.g. in an event method.
+ *
+ * <pre>
+ * ChatBroadcast.send(t, "MSG_PLAYER_JOINED", pluginName, player.getName());
+ * </pre>
+ */
+public final class ChatBroadcast {
+    public static final int BATCH_SIZE = 25;
+
+    private static final Counter BROADCASTS = Metrics.counter("chat.broadcasts");
+    private static final Counter RENDERED = Metrics.counter("chat.broadcasts.rendered");
+    private static final Counter SENT = Metrics.counter("chat.messages.sent");
+
+    private ChatBroadcast() {
+    }
+
+    /**
+     *
+     * @param t
+     * @param key  translation key, see {@link I18n#render(String, String, Object...)}
+     * @param args
+     */
+    public static void send(I18n t, String key, Object... args) {
+        send(lang -> t.render(key, lang, args));
+    }
+
+    /**
+     *
+     * @param message the same for all players
+     */
+    public static void send(String message) {
+        send(lang -> message);
+    }
+
+    /**
+     *
+     * @param renderer called once per system language of the connected players
+     */
+    public static void send(Function<String, String> renderer) {
+        send(Server.getAllPlayers(), renderer);
+    }
+
+    /**
+     *
+     * @param players
+     * @param renderer called once per system language of the players
+     */
+    public static void send(Player[] players, Function<String, String> renderer) {
+        if (players == null || players.length == 0) {
+            return;
+        }
+        BROADCASTS.increment();
+        Map<String, List<Player>> byLanguage = new HashMap<>();
+        for (Player player : players) {
+            String lang = player.getSystemLanguage();
+            byLanguage.computeIfAbsent(lang != null ? lang : "en", k -> new ArrayList<>()).add(player);
+        }
+        for (Map.Entry<String, List<Player>> entry : byLanguage.entrySet()) {
+            String message = renderer.apply(entry.getKey());
+            RENDERED.increment();
+            List<Player> recipients = entry.getValue();
+            for (int from = 0; from < recipients.size(); from += BATCH_SIZE) {
+                List<Player> batch = recipients.subList(from, Math.min(from + BATCH_SIZE, recipients.size()));
+                MainThreadQueue.submit(MainThreadQueue.Priority.NORMAL, () -> sendBatch(batch, message));
+            }
+        }
+    }
+
+    private static void sendBatch(List<Player> batch, String message) {
+        for (Player player : batch) {
+            // may have left since the broadcast was queued
+            if (player.isConnected()) {
+                player.sendTextMessage(message);
+                SENT.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package de.omegazirkel.risingworld.tools;
+
+/**
+ * Builder for colored chat messages with the {@link Colors} theme.
+ *
+ * Builders are reused per thread, so building a message does not allocate
+ * anything but the resulting string. Do not keep a builder after
+ * {@link #build()}.
+ *
+ * <pre>
+ * player.sendTextMessage(ChatMessage.create().prefix(pluginName).text("Your home was set to ").info(name).build());
+ * </pre>
+ */
+public final class ChatMessage {
+    private static final Colors c = Colors.getInstance();
+    private static final int MAX_POOLED_CAPACITY = 4096;
+    private static final ThreadLocal<ChatMessage> POOL = ThreadLocal.withInitial(ChatMessage::new);
+
+    private final StringBuilder sb = new StringBuilder(256);
+    private boolean inUse = false;
+
+    private ChatMessage() {
+    }
+
+    /**
+     *
+     * @return the builder of this thread, or a new one if it is in use already
+     */
+    public static ChatMessage create() {
+        ChatMessage message = POOL.get();
+        if (message.inUse) {
+            message = new ChatMessage();
+        }
+        message.inUse = true;
+        return message;
+    }
+
+    /**
+     * Plugin prefix like {@code PluginName:> } in the okay color
+     *
+     * @param pluginName
+     * @return
+     */
+    public ChatMessage prefix(String pluginName) {
+        sb.append(c.okay).append(pluginName).append(":> ").append(c.endTag);
+        return this;
+    }
+
+    public ChatMessage error(Object text) {
+        return color(c.error, text);
+    }
+
+    public ChatMessage warning(Object text) {
+        return color(c.warning, text);
+    }
+
+    public ChatMessage okay(Object text) {
+        return color(c.okay, text);
+    }
+
+    public ChatMessage text(Object text) {
+        return color(c.text, text);
+    }
+
+    public ChatMessage command(Object text) {
+        return color(c.command, text);
+    }
+
+    public ChatMessage info(Object text) {
+        return color(c.info, text);
+    }
+
+    public ChatMessage comment(Object text) {
+        return color(c.comment, text);
+    }
+
+    /**
+     *
+     * @param colorTag e.g. {@code <color=#F00000>}
+     * @param text
+     * @return
+     */
+    public ChatMessage color(String colorTag, Object text) {
+        sb.append(colorTag).append(text).append(c.endTag);
+        return this;
+    }
+
+    /**
+     * Appends without color
+     *
+     * @param text
+     * @return
+     */
+    public ChatMessage append(Object text) {
+        sb.append(text);
+        return this;
+    }
+
+    public ChatMessage newLine() {
+        sb.append('\n');
+        return this;
+    }
+
+    /**
+     *
+     * @return the message, the builder is released for reuse
+     */
+    public String build() {
+        String message = sb.toString();
+        // do not keep huge buffers around per thread
+        if (sb.capacity() > MAX_POOLED_CAPACITY) {
+            sb.setLength(0);
+            sb.trimToSize();
+        } else {
+            sb.setLength(0);
+        }
+        inUse = false;
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return sb.toString();
+    }
+}
@@ -0,0 +1,128 @@
+package de.omegazirkel.risingworld.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pre-parsed message template with arguments and {@link Colors} tokens.
+ *
+ * <pre>
+ * {0}, {1}, ...      arguments
+ * {error} {warning} {okay} {text} {command} {info} {comment}   color start
+ * {/}                color end
+ * </pre>
+ *
+ * Templates are parsed once and cached by their text, rendering only appends
+ * the parts. Braces that are no token are kept as they are.
+ *
+ * <pre>
+ * ChatTemplate.of("{okay}{0}:&gt;{/} {text}{1} joined the server{/}").render(pluginName, player.getName());
+ * </pre>
+ */
+public final class ChatTemplate {
+    private static final int MAX_CACHED = 2000;
+    private static final Map<String, ChatTemplate> CACHE = new ConcurrentHashMap<>();
+
+    // literal parts are Strings, arguments are Integers
+    private final Object[] parts;
+    private final int length;
+
+    private ChatTemplate(Object[] parts, int length) {
+        this.parts = parts;
+        this.length = length;
+    }
+
+    /**
+     *
+     * @param template
+     * @return the cached template
+     */
+    public static ChatTemplate of(String template) {
+        ChatTemplate cached = CACHE.get(template);
+        if (cached != null) {
+            return cached;
+        }
+        ChatTemplate parsed = parse(template);
+        // dynamic texts used as template must not grow the cache forever
+        if (CACHE.size() < MAX_CACHED) {
+            CACHE.putIfAbsent(template, parsed);
+        }
+        return parsed;
+    }
+
+    private static ChatTemplate parse(String template) {
+        Colors c = Colors.getInstance();
+        List<Object> parts = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < template.length()) {
+            char ch = template.charAt(i);
+            int close = ch == '{' ? template.indexOf('}', i) : -1;
+            if (close < 0) {
+                literal.append(ch);
+                i++;
+                continue;
+            }
+            String token = template.substring(i + 1, close);
+            String replacement = switch (token) {
+                case "error" -> c.error;
+                case "warning" -> c.warning;
+                case "okay" -> c.okay;
+                case "text" -> c.text;
+                case "command" -> c.command;
+                case "info" -> c.info;
+                case "comment" -> c.comment;
+                case "/" -> c.endTag;
+                default -> null;
+            };
+            if (replacement != null) {
+                literal.append(replacement);
+            } else if (!token.isEmpty() && token.length() < 4 && token.chars().allMatch(Character::isDigit)) {
+                if (literal.length() > 0) {
+                    parts.add(literal.toString());
+                    literal.setLength(0);
+                }
+                parts.add(Integer.valueOf(token));
+            } else {
+                literal.append(ch);
+                i++;
+                continue;
+            }
+            i = close + 1;
+        }
+        if (literal.length() > 0) {
+            parts.add(literal.toString());
+        }
+        int length = 0;
+        for (Object part : parts) {
+            length += part instanceof String s ? s.length() : 16;
+        }
+        return new ChatTemplate(parts.toArray(), length);
+    }
+
+    /**
+     *
+     * @param args missing arguments are rendered as {n}
+     * @return
+     */
+    public String render(Object... args) {
+        if (parts.length == 1 && parts[0] instanceof String s) {
+            return s;
+        }
+        StringBuilder sb = new StringBuilder(length);
+        for (Object part : parts) {
+            if (part instanceof Integer index) {
+                if (index < args.length) {
+                    sb.append(args[index]);
+                } else {
+                    sb.append('{').append(index).append('}');
+                }
+            } else {
+                sb.append((String) part);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,357 @@
+package de.omegazirkel.risingworld.tools;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+import java.util.zip.ZipFile;
+
+import de.omegazirkel.risingworld.tools.metrics.Counter;
+import de.omegazirkel.risingworld.tools.metrics.Metrics;
+
+/**
+ * Class loader for the jars in the lib directory of the tools plugin
+ * (Tyrus, httpclient5, ...), shared by the tools and all OZ plugins.
+ *
+ * The jars are opened and indexed by directory once, when the tools plugin is
+ * enabled. A class or resource lookup only reads the jars containing its
+ * package instead of searching every jar, which mostly speeds up
+ * ServiceLoader lookups. Classes are still loaded parent first. On disable
+ * the jars are closed and the loader is dropped, so a reload does not keep
+ * the old classes alive.
+ *
+ * Use it as context class loader for libraries that look up their
+ * implementation with the ServiceLoader:
+ *
+ * <pre>
+ * WebSocketContainer container = DependencyClassLoader.get().withContext(ContainerProvider::getWebSocketContainer);
+ * </pre>
+ */
+public final class DependencyClassLoader extends ClassLoader implements Closeable {
+    static {
+        registerAsParallelCapable();
+    }
+
+    private static DependencyClassLoader instance = null;
+
+    private static final Counter DEFINED = Metrics.counter("classloader.classes.defined");
+
+    private final List<Jar> jars = new ArrayList<>();
+    // directory inside the jars ("org/glassfish/tyrus/client", "META-INF/services") -> jars containing it
+    private final Map<String, Jar[]> index = new HashMap<>();
+    // found resources by name, ServiceLoader asks for the same files on every lookup
+    private final Map<String, List<URL>> resources = new ConcurrentHashMap<>();
+    private final long indexMillis;
+    private volatile boolean closed = false;
+
+    private static OZLogger logger() {
+        return OZLogger.getInstance("OZ.Tools");
+    }
+
+    private static final class Jar {
+        private final JarFile file;
+        private final URI uri;
+        private final ProtectionDomain domain;
+        private final Manifest manifest;
+
+        private Jar(Path path) throws IOException {
+            this.file = new JarFile(path.toFile(), true, ZipFile.OPEN_READ, JarFile.runtimeVersion());
+            this.uri = path.toUri();
+            this.domain = new ProtectionDomain(new CodeSource(uri.toURL(), (Certificate[]) null), null);
+            this.manifest = file.getManifest();
+        }
+    }
+
+    /**
+     * Opens and indexes the jars
+     *
+     * @param jarFiles
+     * @param parent   loader asked first, usually the plugin class loader
+     * @throws IOException if a jar can not be read, already opened jars are
+     *                     closed
+     */
+    public DependencyClassLoader(List<Path> jarFiles, ClassLoader parent) throws IOException {
+        super("OZ-Dependencies", parent);
+        long start = System.nanoTime();
+        Map<String, List<Jar>> dirs = new HashMap<>();
+        try {
+            for (Path path : jarFiles) {
+                Jar jar = new Jar(path);
+                jars.add(jar);
+                try (Stream<JarEntry> entries = jar.file.versionedStream()) {
+                    entries.forEach(entry -> {
+                        if (!entry.isDirectory()) {
+                            List<Jar> list = dirs.computeIfAbsent(directory(entry.getName()), k -> new ArrayList<>(1));
+                            if (list.isEmpty() || list.get(list.size() - 1) != jar) {
+                                list.add(jar);
+                            }
+                        }
+                    });
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+        for (Map.Entry<String, List<Jar>> entry : dirs.entrySet()) {
+            index.put(entry.getKey(), entry.getValue().toArray(new Jar[0]));
+        }
+        this.indexMillis = (System.nanoTime() - start) / 1_000_000;
+    }
+
+    /**
+     * Creates the shared loader for the jars in the directory, a previous one is
+     * closed. Called by the tools plugin in onEnable.
+     *
+     * @param libDir
+     * @param parent
+     * @return
+     */
+    public static synchronized DependencyClassLoader init(Path libDir, ClassLoader parent) {
+        shutdown();
+        List<Path> jarFiles = new ArrayList<>();
+        if (Files.isDirectory(libDir)) {
+            try (Stream<Path> files = Files.list(libDir)) {
+                files.filter(p -> p.getFileName().toString().toLowerCase().endsWith(".jar")).sorted()
+                        .forEach(jarFiles::add);
+            } catch (IOException e) {
+                logger().error("❌ Could not list " + libDir + ": " + e.getMessage());
+            }
+        } else {
+            logger().warn("⚠️ 'lib' directory not found at: " + libDir.toAbsolutePath()
+                    + ". Dependencies will not be loaded.");
+        }
+        try {
+            instance = new DependencyClassLoader(jarFiles, parent);
+        } catch (IOException e) {
+            logger().error("❌ Failed to index " + libDir + " (" + e.getClass().getTypeName() + "): "
+                    + e.getMessage());
+            instance = new DependencyClassLoader(parent);
+        }
+        Metrics.gauge("classloader.jars", instance.jars::size);
+        Metrics.gauge("classloader.packages", instance.index::size);
+        logger().info("📦 Indexed " + instance.jars.size() + " jars (" + instance.index.size()
+                + " packages) in " + instance.indexMillis + " ms");
+        return instance;
+    }
+
+    // empty fallback, everything goes to the parent
+    private DependencyClassLoader(ClassLoader parent) {
+        super("OZ-Dependencies", parent);
+        this.indexMillis = 0;
+    }
+
+    /**
+     *
+     * @return the shared loader, created from the lib directory next to the
+     *         tools jar if the tools plugin did not initialize it yet
+     */
+    public static synchronized DependencyClassLoader get() {
+        if (instance == null) {
+            Path libDir;
+            try {
+                File jar = new File(DependencyClassLoader.class.getProtectionDomain().getCodeSource().getLocation()
+                        .toURI());
+                libDir = jar.toPath().resolveSibling("lib");
+            } catch (Exception e) {
+                libDir = Path.of("lib");
+            }
+            init(libDir, DependencyClassLoader.class.getClassLoader());
+        }
+        return instance;
+    }
+
+    /**
+     * Closes the shared loader, called by the tools plugin on disable
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.close();
+            instance = null;
+            Metrics.remove("classloader.jars");
+            Metrics.remove("classloader.packages");
+        }
+    }
+
+    /**
+     * Runs the action with this loader as context class loader of the current
+     * thread
+     *
+     * @param <T>
+     * @param action
+     * @return
+     * @throws Exception thrown by the action
+     */
+    public <T> T withContext(Callable<T> action) throws Exception {
+        Thread thread = Thread.currentThread();
+        ClassLoader original = thread.getContextClassLoader();
+        thread.setContextClassLoader(this);
+        try {
+            return action.call();
+        } finally {
+            thread.setContextClassLoader(original);
+        }
+    }
+
+    public long getIndexMillis() {
+        return indexMillis;
+    }
+
+    private static String directory(String name) {
+        int slash = name.lastIndexOf('/');
+        return slash < 0 ? "" : name.substring(0, slash);
+    }
+
+    private Jar[] jarsFor(String name) {
+        if (closed) {
+            return new Jar[0];
+        }
+        Jar[] candidates = index.get(directory(name));
+        return candidates != null ? candidates : new Jar[0];
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        String path = name.replace('.', '/') + ".class";
+        for (Jar jar : jarsFor(path)) {
+            JarEntry entry = jar.file.getJarEntry(path);
+            if (entry == null) {
+                continue;
+            }
+            byte[] bytes;
+            try (InputStream in = jar.file.getInputStream(entry)) {
+                bytes = in.readAllBytes();
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+            definePackage(name, jar);
+            DEFINED.increment();
+            return defineClass(name, bytes, 0, bytes.length, jar.domain);
+        }
+        throw new ClassNotFoundException(name);
+    }
+
+    private void definePackage(String className, Jar jar) {
+        int dot = className.lastIndexOf('.');
+        if (dot < 0) {
+            return;
+        }
+        String pkg = className.substring(0, dot);
+        if (getDefinedPackage(pkg) != null) {
+            return;
+        }
+        try {
+            if (jar.manifest != null) {
+                Attributes attributes = jar.manifest.getMainAttributes();
+                definePackage(pkg, attributes.getValue("Specification-Title"),
+                        attributes.getValue("Specification-Version"), attributes.getValue("Specification-Vendor"),
+                        attributes.getValue("Implementation-Title"), attributes.getValue("Implementation-Version"),
+                        attributes.getValue("Implementation-Vendor"), null);
+            } else {
+                definePackage(pkg, null, null, null, null, null, null, null);
+            }
+        } catch (IllegalArgumentException e) {
+            // defined by another thread meanwhile
+        }
+    }
+
+    @Override
+    protected URL findResource(String name) {
+        List<URL> urls = lookupResources(name);
+        return urls.isEmpty() ? null : urls.get(0);
+    }
+
+    @Override
+    protected Enumeration<URL> findResources(String name) {
+        return Collections.enumeration(lookupResources(name));
+    }
+
+    private List<URL> lookupResources(String name) {
+        List<URL> cached = resources.get(name);
+        if (cached != null) {
+            return cached;
+        }
+        List<URL> urls = new ArrayList<>(1);
+        for (Jar jar : jarsFor(name)) {
+            if (jar.file.getJarEntry(name) != null) {
+                URL url = resourceUrl(jar, name);
+                if (url != null) {
+                    urls.add(url);
+                }
+            }
+        }
+        if (urls.isEmpty()) {
+            return List.of();
+        }
+        urls = List.copyOf(urls);
+        resources.put(name, urls);
+        return urls;
+    }
+
+    // served from the open jar, a plain jar: url would open (and cache) the file
+    // again in the JDK and keep it open after a reload
+    private URL resourceUrl(Jar jar, String name) {
+        try {
+            return URL.of(URI.create("jar:" + jar.uri + "!/" + name), new URLStreamHandler() {
+                @Override
+                protected URLConnection openConnection(URL url) {
+                    return new URLConnection(url) {
+                        @Override
+                        public void connect() {
+                        }
+
+                        @Override
+                        public InputStream getInputStream() throws IOException {
+                            JarEntry entry = closed ? null : jar.file.getJarEntry(name);
+                            if (entry == null) {
+                                throw new IOException("Closed or missing: " + url);
+                            }
+                            return jar.file.getInputStream(entry);
+                        }
+                    };
+                }
+            });
+        } catch (Exception e) {
+            logger().warn("⚠️ Invalid resource name in " + jar.uri + ": " + name);
+            return null;
+        }
+    }
+
+    /**
+     * Closes all jars, classes that are not loaded yet can not be loaded anymore
+     */
+    @Override
+    public void close() {
+        closed = true;
+        resources.clear();
+        for (Jar jar : jars) {
+            try {
+                jar.file.close();
+            } catch (IOException e) {
+                logger().warn("⚠️ Could not close " + jar.uri + ": " + e.getMessage());
+            }
+        }
+    }
+}
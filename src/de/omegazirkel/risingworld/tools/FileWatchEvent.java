@@ -0,0 +1,33 @@
+package de.omegazirkel.risingworld.tools;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one file event of the {@link PluginFileWatcher}, its duration
+ * is the time spent in the listeners
+ */
+@Name("de.omegazirkel.tools.FileWatch")
+@Label("Plugin File Event")
+@Category({ "OZ Tools", "Plugins" })
+@Description("File change in the plugins directory dispatched to the listeners")
+@StackTrace(false)
+class FileWatchEvent extends jdk.jfr.Event {
+    @Label("Plugin")
+    @Description("Plugin directory the file is in")
+    String plugin;
+
+    @Label("Path")
+    String path;
+
+    @Label("Kind")
+    @Description("ENTRY_CREATE, ENTRY_MODIFY or ENTRY_DELETE")
+    String kind;
+
+    @Label("Type")
+    @Description("jar, settings or other")
+    String type;
+}
@@ -0,0 +1,264 @@
+package de.omegazirkel.risingworld.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import de.omegazirkel.risingworld.tools.metrics.Counter;
+import de.omegazirkel.risingworld.tools.metrics.Metrics;
+
+/**
+ * Hashed timer wheel for large numbers of short timeouts that are mostly
+ * cancelled before they expire, e.g. debounce timers.
+ *
+ * Scheduling and cancelling are O(1): a timeout is linked into the bucket of
+ * its deadline tick and unlinked on cancel. One periodic task on the shared
+ * {@link OZScheduler} advances the wheel and runs the expired tasks, so
+ * thousands of timers cost a single tick task instead of one scheduled future
+ * each. Expired tasks run on the scheduler thread and have to be short, hand
+ * server work over to the {@link MainThreadQueue}.
+ *
+ * Timeouts fire up to one tick late, never early.
+ */
+public final class HashedTimerWheel {
+    public static final long DEFAULT_TICK_MILLIS = 10;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static HashedTimerWheel shared = null;
+
+    private static final Counter EXPIRED = Metrics.counter("timerwheel.expired");
+    private static final Counter CANCELLED = Metrics.counter("timerwheel.cancelled");
+
+    private final String name;
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startNanos = System.nanoTime();
+    private final Object lock = new Object();
+    // next tick to process, guarded by lock
+    private long tick = 0;
+    private int pending = 0;
+    private ScheduledFuture<?> ticker = null;
+
+    private static OZLogger logger() {
+        return OZLogger.getInstance("OZ.Tools.Scheduler");
+    }
+
+    /**
+     * A scheduled task, can be cancelled until it expired
+     */
+    public final class Timeout {
+        private final Runnable task;
+        private long rounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(Runnable task) {
+            this.task = task;
+        }
+
+        /**
+         *
+         * @return false if the timeout already expired or was cancelled
+         */
+        public boolean cancel() {
+            synchronized (lock) {
+                if (bucket == null) {
+                    return false;
+                }
+                bucket.remove(this);
+                pending--;
+            }
+            CANCELLED.increment();
+            return true;
+        }
+
+        public boolean isPending() {
+            synchronized (lock) {
+                return bucket != null;
+            }
+        }
+    }
+
+    // intrusive doubly linked list, guarded by lock
+    private static final class Bucket {
+        private Timeout head;
+
+        private void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.prev = null;
+            timeout.next = head;
+            if (head != null) {
+                head.prev = timeout;
+            }
+            head = timeout;
+        }
+
+        private void remove(Timeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.bucket = null;
+            timeout.prev = null;
+            timeout.next = null;
+        }
+    }
+
+    /**
+     *
+     * @param name      used for the metrics
+     * @param tick      resolution of the wheel
+     * @param unit
+     * @param wheelSize buckets, rounded up to a power of two
+     */
+    public HashedTimerWheel(String name, long tick, TimeUnit unit, int wheelSize) {
+        this.name = name;
+        this.tickNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(1), unit.toNanos(tick));
+        int size = Integer.highestOneBit(Math.max(2, wheelSize) * 2 - 1);
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        Metrics.gauge("timerwheel." + name + ".pending", this::getPendingCount);
+    }
+
+    /**
+     *
+     * @return the wheel shared by all tools (10 ms ticks)
+     */
+    public static synchronized HashedTimerWheel shared() {
+        if (shared == null) {
+            shared = new HashedTimerWheel("shared", DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE);
+        }
+        return shared;
+    }
+
+    /**
+     * Cancels the pending timeouts of the shared wheel and drops it, called
+     * when the tools plugin is disabled before the scheduler stops its ticker.
+     * The next {@link #shared()} creates a new wheel.
+     */
+    public static synchronized void resetShared() {
+        if (shared != null) {
+            int cancelled = shared.cancelAll();
+            if (cancelled > 0) {
+                logger().info("[shared] Cancelled " + cancelled + " pending timeouts");
+            }
+            shared = null;
+        }
+    }
+
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pending;
+        }
+    }
+
+    /**
+     *
+     * @param task
+     * @param delay
+     * @param unit
+     * @return
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(task);
+        long elapsed = System.nanoTime() - startNanos;
+        // round up, a timeout must not fire early
+        long deadline = (elapsed + Math.max(0, unit.toNanos(delay)) + tickNanos - 1) / tickNanos;
+        synchronized (lock) {
+            ensureTicking(elapsed);
+            deadline = Math.max(deadline, tick);
+            timeout.rounds = (deadline - tick) / wheel.length;
+            wheel[(int) (deadline & mask)].add(timeout);
+            pending++;
+        }
+        return timeout;
+    }
+
+    // the ticker only runs while timeouts are pending, disabling the tools resets the shared wheel first
+    private void ensureTicking(long elapsed) {
+        if (ticker == null || ticker.isDone()) {
+            if (pending == 0) {
+                // all buckets are empty, skip the ticks while the wheel was stopped
+                tick = Math.max(tick, elapsed / tickNanos);
+            }
+            ticker = OZScheduler.getInstance("OZ.Tools").scheduleAtFixedRate(this::advance, tickNanos, tickNanos,
+                    TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Cancels all pending timeouts and stops the ticker
+     *
+     * @return number of cancelled timeouts
+     */
+    public int cancelAll() {
+        int cancelled;
+        synchronized (lock) {
+            cancelled = pending;
+            for (Bucket bucket : wheel) {
+                while (bucket.head != null) {
+                    bucket.remove(bucket.head);
+                }
+            }
+            pending = 0;
+            if (ticker != null) {
+                ticker.cancel(false);
+                ticker = null;
+            }
+        }
+        CANCELLED.add(cancelled);
+        return cancelled;
+    }
+
+    private void advance() {
+        long target = (System.nanoTime() - startNanos) / tickNanos;
+        List<Runnable> expired = null;
+        synchronized (lock) {
+            while (tick <= target) {
+                Bucket bucket = wheel[(int) (tick & mask)];
+                Timeout timeout = bucket.head;
+                while (timeout != null) {
+                    Timeout next = timeout.next;
+                    if (timeout.rounds <= 0) {
+                        bucket.remove(timeout);
+                        pending--;
+                        if (expired == null) {
+                            expired = new ArrayList<>();
+                        }
+                        expired.add(timeout.task);
+                    } else {
+                        timeout.rounds--;
+                    }
+                    timeout = next;
+                }
+                tick++;
+            }
+            if (pending == 0 && ticker != null) {
+                ticker.cancel(false);
+                ticker = null;
+            }
+        }
+        if (expired == null) {
+            return;
+        }
+        EXPIRED.add(expired.size());
+        for (Runnable task : expired) {
+            try {
+                task.run();
+            } catch (Exception e) {
+                logger().error("[" + name + "] Timer task failed (" + e.getClass().getTypeName() + "): "
+                        + e.getMessage());
+            }
+        }
+    }
+}
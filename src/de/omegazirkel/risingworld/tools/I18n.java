@@ -8,11 +8,14 @@ import java.io.InputStreamReader;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.risingworld.api.Plugin;
 
 public class I18n {
     private Map<String, Properties> language = new HashMap<String, Properties>();
+    // lang + key -> parsed template
+    private final Map<String, ChatTemplate> templates = new ConcurrentHashMap<>();
     private static final String defaultLanguage = "en";
 
     public static OZLogger logger() {
@@ -119,4 +122,27 @@ public class I18n {
     public String get(String key) {
         return this.get(key, defaultLanguage);
     }
-}
\ No newline at end of file
+
+    /**
+     * Translation as {@link ChatTemplate}, parsed once per language
+     *
+     * @param key
+     * @param lang
+     * @return
+     */
+    public ChatTemplate getTemplate(String key, String lang) {
+        return templates.computeIfAbsent(lang.toLowerCase() + "|" + key, k -> ChatTemplate.of(get(key, lang)));
+    }
+
+    /**
+     * Translation with arguments and color tokens, see {@link ChatTemplate}
+     *
+     * @param key
+     * @param lang
+     * @param args
+     * @return
+     */
+    public String render(String key, String lang, Object... args) {
+        return getTemplate(key, lang).render(args);
+    }
+}
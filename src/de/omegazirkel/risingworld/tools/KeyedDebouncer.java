@@ -0,0 +1,208 @@
+package de.omegazirkel.risingworld.tools;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import de.omegazirkel.risingworld.tools.HashedTimerWheel.Timeout;
+
+/**
+ * Debouncer for many independent keys (plugins, players, chunks, ...) on a
+ * {@link HashedTimerWheel}.
+ *
+ * Every {@link #call(Object)} restarts the quiet period of its key. With the
+ * trailing edge (default) the action runs once the key was quiet for the
+ * delay, with the leading edge it runs on the first call and further calls
+ * within the quiet period are dropped. With a max wait the trailing action
+ * runs at the latest that long after the first call of a burst, so leading +
+ * max wait works as a throttle.
+ *
+ * <pre>
+ * KeyedDebouncer&lt;String&gt; positions = new KeyedDebouncer&lt;String&gt;(uid -&gt; broadcastPosition(uid), 250,
+ *         TimeUnit.MILLISECONDS).setMaxWait(1, TimeUnit.SECONDS);
+ * ...
+ * positions.call(player.getUID());
+ * </pre>
+ *
+ * Actions run on the timer thread (the leading edge on the calling thread) and
+ * have to be short, use the {@link MainThreadQueue} for server work.
+ *
+ * @param <K>
+ */
+public class KeyedDebouncer<K> {
+    private final Consumer<K> action;
+    private final long delayNanos;
+    private final HashedTimerWheel wheel;
+    private final Map<K, Burst> bursts = new ConcurrentHashMap<>();
+    private volatile boolean leading = false;
+    private volatile boolean trailing = true;
+    private volatile long maxWaitNanos = 0;
+
+    private static OZLogger logger() {
+        return OZLogger.getInstance("OZ.Tools.Scheduler");
+    }
+
+    // state of one key between the first call and the trailing edge, guarded by
+    // the map entry (compute)
+    private final class Burst {
+        private final long firstCall = System.nanoTime();
+        private Timeout timeout;
+        private boolean callsPending;
+        // scheduled at the max wait, later calls do not move the timeout anymore
+        private boolean capped;
+    }
+
+    /**
+     *
+     * @param action called with the key
+     * @param delay  quiet period
+     * @param unit
+     */
+    public KeyedDebouncer(Consumer<K> action, long delay, TimeUnit unit) {
+        this(action, delay, unit, HashedTimerWheel.shared());
+    }
+
+    /**
+     *
+     * @param action called with the key
+     * @param delay  quiet period
+     * @param unit
+     * @param wheel
+     */
+    public KeyedDebouncer(Consumer<K> action, long delay, TimeUnit unit, HashedTimerWheel wheel) {
+        this.action = action;
+        this.delayNanos = unit.toNanos(delay);
+        this.wheel = wheel;
+    }
+
+    /**
+     *
+     * @param leading run the action on the first call of a burst
+     * @return
+     */
+    public KeyedDebouncer<K> setLeading(boolean leading) {
+        this.leading = leading;
+        return this;
+    }
+
+    /**
+     *
+     * @param trailing run the action after the quiet period if it was called
+     *                 (again) during the burst
+     * @return
+     */
+    public KeyedDebouncer<K> setTrailing(boolean trailing) {
+        this.trailing = trailing;
+        return this;
+    }
+
+    /**
+     *
+     * @param maxWait max time between the first call of a burst and the
+     *                trailing edge, 0 for no limit
+     * @param unit
+     * @return
+     */
+    public KeyedDebouncer<K> setMaxWait(long maxWait, TimeUnit unit) {
+        this.maxWaitNanos = Math.max(0, unit.toNanos(maxWait));
+        return this;
+    }
+
+    /**
+     *
+     * @param key
+     */
+    public void call(K key) {
+        // [trailing edge of an expired burst, leading edge]
+        boolean[] runNow = { false, false };
+        bursts.compute(key, (k, burst) -> {
+            if (burst != null && burst.capped && burst.timeout.isPending()) {
+                burst.callsPending = true;
+                return burst;
+            }
+            if (burst != null && !burst.timeout.cancel()) {
+                // expired right now, its timer task will find the new burst and skip, so the
+                // trailing edge is run here
+                runNow[0] = trailing && burst.callsPending;
+                burst = null;
+            }
+            if (burst == null) {
+                burst = new Burst();
+                runNow[1] = leading;
+                burst.callsPending = !leading;
+            } else {
+                burst.callsPending = true;
+            }
+            long delay = delayNanos;
+            if (maxWaitNanos > 0) {
+                long left = maxWaitNanos - (System.nanoTime() - burst.firstCall);
+                if (left <= delay) {
+                    delay = Math.max(0, left);
+                    burst.capped = true;
+                }
+            }
+            Burst b = burst;
+            burst.timeout = wheel.schedule(() -> expire(k, b), delay, TimeUnit.NANOSECONDS);
+            return burst;
+        });
+        if (runNow[0]) {
+            run(key);
+        }
+        if (runNow[1]) {
+            run(key);
+        }
+    }
+
+    private void expire(K key, Burst burst) {
+        boolean[] runNow = { false };
+        bursts.computeIfPresent(key, (k, current) -> {
+            if (current != burst) {
+                return current;
+            }
+            runNow[0] = trailing && burst.callsPending;
+            return null;
+        });
+        if (runNow[0]) {
+            run(key);
+        }
+    }
+
+    private void run(K key) {
+        try {
+            action.accept(key);
+        } catch (Exception e) {
+            logger().error("Debounced action for " + key + " failed (" + e.getClass().getTypeName() + "): "
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * Drops the pending trailing call of a key
+     *
+     * @param key
+     */
+    public void cancel(K key) {
+        Burst burst = bursts.remove(key);
+        if (burst != null) {
+            burst.timeout.cancel();
+        }
+    }
+
+    /**
+     * Drops all pending trailing calls
+     */
+    public void cancelAll() {
+        for (K key : bursts.keySet()) {
+            cancel(key);
+        }
+    }
+
+    /**
+     *
+     * @return keys inside a burst
+     */
+    public int getPendingCount() {
+        return bursts.size();
+    }
+}
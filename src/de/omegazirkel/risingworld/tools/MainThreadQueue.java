@@ -0,0 +1,240 @@
+package de.omegazirkel.risingworld.tools;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import de.omegazirkel.risingworld.tools.metrics.Counter;
+import de.omegazirkel.risingworld.tools.metrics.Histogram;
+import de.omegazirkel.risingworld.tools.metrics.Metrics;
+
+/**
+ * Work queue for the server thread that spreads large batches over several
+ * ticks.
+ *
+ * Tasks can be submitted from any thread. Every tick the tools plugin runs
+ * queued tasks until the time budget (default 2 ms, {@code mainThread.budgetMs}
+ * in the tools settings.properties) is used up, the rest is carried over to
+ * the next tick. At least one task runs per tick. Higher priorities always run
+ * first.
+ *
+ * Tasks with a coalescing key replace a pending task with the same key, e.g.
+ * only the latest position update of a player is sent. The replaced task keeps
+ * its place in the queue, unless the new one has a higher priority, then it
+ * moves to the queue of that priority:
+ *
+ * <pre>
+ * MainThreadQueue.submit("pos-" + player.getUID(), MainThreadQueue.Priority.LOW, () -> updateMarker(player));
+ * </pre>
+ */
+public final class MainThreadQueue {
+
+    public enum Priority {
+        HIGH, NORMAL, LOW
+    }
+
+    private static final class Task {
+        private final String key;
+        private final Priority priority;
+        private final long queuedAt = System.nanoTime();
+        // null once the task moved to a higher priority
+        private volatile Runnable action;
+
+        private Task(String key, Priority priority, Runnable action) {
+            this.key = key;
+            this.priority = priority;
+            this.action = action;
+        }
+    }
+
+    // one queue per priority, by ordinal
+    private static final List<Queue<Task>> QUEUES = List.of(new ConcurrentLinkedQueue<>(),
+            new ConcurrentLinkedQueue<>(), new ConcurrentLinkedQueue<>());
+    // pending tasks by coalescing key
+    private static final Map<String, Task> PENDING = new ConcurrentHashMap<>();
+    private static final AtomicInteger BACKLOG = new AtomicInteger();
+
+    private static final Histogram TICK = Metrics.histogram("mainthread.tick.micros");
+    private static final Histogram WAIT = Metrics.histogram("mainthread.wait.micros");
+    private static final Counter RUN = Metrics.counter("mainthread.tasks.run");
+    private static final Counter COALESCED = Metrics.counter("mainthread.tasks.coalesced");
+    private static final Counter FAILED = Metrics.counter("mainthread.tasks.failed");
+    // ticks that left work for the next tick
+    private static final Counter CARRIED_OVER = Metrics.counter("mainthread.ticks.carriedOver");
+    static {
+        Metrics.gauge("mainthread.backlog", BACKLOG::get);
+        Metrics.gauge("mainthread.budget.micros", () -> MainThreadQueue.budgetNanos / 1000);
+    }
+
+    private static volatile long budgetNanos = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private MainThreadQueue() {
+    }
+
+    private static OZLogger logger() {
+        return OZLogger.getInstance("OZ.Tools.MainThread");
+    }
+
+    /**
+     *
+     * @param micros time per tick for queued tasks
+     */
+    public static void setBudget(long micros) {
+        budgetNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(1, micros));
+    }
+
+    public static long getBudget() {
+        return TimeUnit.NANOSECONDS.toMicros(budgetNanos);
+    }
+
+    /**
+     *
+     * @return number of tasks waiting for the server thread
+     */
+    public static int getBacklog() {
+        return BACKLOG.get();
+    }
+
+    public static void submit(Runnable action) {
+        submit(null, Priority.NORMAL, action);
+    }
+
+    public static void submit(Priority priority, Runnable action) {
+        submit(null, priority, action);
+    }
+
+    /**
+     *
+     * @param key      tasks with the same key replace the pending one, null for
+     *                 no coalescing
+     * @param priority a higher priority than the one of the pending task moves
+     *                 it up, a lower one is ignored
+     * @param action
+     * @return false if a pending task was replaced
+     */
+    public static boolean submit(String key, Priority priority, Runnable action) {
+        if (key == null) {
+            enqueue(new Task(null, priority, action));
+            return true;
+        }
+        boolean[] added = { false };
+        PENDING.compute(key, (k, pending) -> {
+            if (pending != null && priority.compareTo(pending.priority) >= 0) {
+                // keeps its place in the queue, only the action is replaced
+                pending.action = action;
+                return pending;
+            }
+            if (pending != null) {
+                // skipped when it is polled, the new task takes over the key
+                pending.action = null;
+            } else {
+                added[0] = true;
+            }
+            Task task = new Task(k, priority, action);
+            enqueue(task);
+            return task;
+        });
+        if (!added[0]) {
+            COALESCED.increment();
+        }
+        return added[0];
+    }
+
+    /**
+     *
+     * @param <T>
+     * @param priority
+     * @param supplier
+     * @return completed on the server thread
+     */
+    public static <T> CompletableFuture<T> supply(Priority priority, Supplier<T> supplier) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        submit(null, priority, () -> {
+            try {
+                result.complete(supplier.get());
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    private static void enqueue(Task task) {
+        BACKLOG.incrementAndGet();
+        QUEUES.get(task.priority.ordinal()).add(task);
+    }
+
+    private static Task poll() {
+        for (Queue<Task> queue : QUEUES) {
+            Task task = queue.poll();
+            if (task != null) {
+                BACKLOG.decrementAndGet();
+                return task;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Runs queued tasks until the budget is used up, called by the tools plugin
+     * on every server tick
+     */
+    public static void runTick() {
+        if (BACKLOG.get() == 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        long deadline = start + budgetNanos;
+        long now = start;
+        Task task;
+        while ((task = poll()) != null) {
+            if (task.key != null) {
+                // from here on a new submit with the same key queues a new task
+                PENDING.remove(task.key, task);
+            }
+            Runnable action = task.action;
+            if (action == null) {
+                continue;
+            }
+            WAIT.record((now - task.queuedAt) / 1000);
+            try {
+                action.run();
+                RUN.increment();
+            } catch (Exception e) {
+                FAILED.increment();
+                logger().error("Task failed (" + e.getClass().getTypeName() + "): " + e.getMessage());
+            }
+            now = System.nanoTime();
+            if (now >= deadline) {
+                break;
+            }
+        }
+        TICK.record((now - start) / 1000);
+        if (BACKLOG.get() > 0) {
+            CARRIED_OVER.increment();
+        }
+    }
+
+    /**
+     * Drops all pending tasks, e.g. when the plugins are reloaded
+     *
+     * @return number of dropped tasks
+     */
+    public static int clear() {
+        int dropped = 0;
+        while (poll() != null) {
+            dropped++;
+        }
+        PENDING.clear();
+        if (dropped > 0) {
+            logger().warn("⚠️ Dropped " + dropped + " pending main thread tasks");
+        }
+        return dropped;
+    }
+}
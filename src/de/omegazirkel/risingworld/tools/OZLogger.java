@@ -2,12 +2,16 @@ package de.omegazirkel.risingworld.tools;
 
 import java.io.InputStream;
 import java.net.URL;
+import java.util.Collection;
 import java.util.Enumeration;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.MarkerManager;
+import org.apache.logging.log4j.core.Appender;
 import org.apache.logging.log4j.core.Logger;
 import org.apache.logging.log4j.core.LoggerContext;
 import org.apache.logging.log4j.core.config.Configuration;
@@ -16,13 +20,23 @@ import org.apache.logging.log4j.core.config.ConfigurationSource;
 import org.apache.logging.log4j.core.config.NullConfiguration;
 
 import de.omegazirkel.risingworld.OZTools;
+import de.omegazirkel.risingworld.tools.log.DiscordLogAppender;
+import de.omegazirkel.risingworld.tools.log.RecentLogAppender;
+import de.omegazirkel.risingworld.tools.metrics.Counter;
+import de.omegazirkel.risingworld.tools.metrics.Metrics;
 
-public class OZLogger {
+public final class OZLogger {
 
     private static final Map<String, OZLogger> INSTANCES = new ConcurrentHashMap<>();
     private static final boolean DEBUG_MODE = false;
     private static final String CONFIG_FILE = "oz-log4j2.xml";
 
+    /**
+     * Events with this marker are only written to the console, the file
+     * appender and the recent log / Discord appenders skip them
+     */
+    public static final Marker CONSOLE_ONLY = MarkerManager.getMarker("OZ_CONSOLE");
+
     private static boolean isInShutdownMode = false;
 
     private Logger logger() {
@@ -31,9 +45,12 @@ public class OZLogger {
 
     private LoggerContext ctx;
     private final String loggerName;
+    // messages per logger name, see Metrics
+    private final Counter messages;
 
     public OZLogger(String loggerName, boolean registerOnly) {
         this.loggerName = loggerName;
+        this.messages = Metrics.counter("log." + loggerName);
         // prevent init on shutdown and if registerOnly is set
         if (!registerOnly && !isInShutdownMode) {
             init();
@@ -84,6 +101,8 @@ public class OZLogger {
 
                 logger().debug("🪲 Logger initialized: " + loggerName + " using config: " + configUrl);
             }
+            RecentLogAppender.attach(this);
+            DiscordLogAppender.attach(this);
 
         } catch (Exception e) {
             System.out.println("[" + loggerName + "] 🆘 Failed to initialize logger: " + e.getMessage());
@@ -101,9 +120,22 @@ public class OZLogger {
         });
     }
 
+    /**
+     *
+     * @return all initialized loggers
+     */
+    public static Collection<OZLogger> getInstances() {
+        return INSTANCES.values();
+    }
+
+    public String getLoggerName() {
+        return loggerName;
+    }
+
     public static void shutdownAll() {
         isInShutdownMode = true;
         OZTools.logger().warn("⚠️ Shutting down all logger contexts ...");
+        RecentLogAppender.detachAll();
         for (OZLogger logger : INSTANCES.values()) {
             try {
                 if (logger.ctx != null) {
@@ -139,11 +171,42 @@ public class OZLogger {
         isInShutdownMode = false;
     }
 
+    /**
+     * Adds an appender next to the console and file appender of this logger
+     *
+     * @param appender started appender
+     * @return false if the logger has no context (not initialized or shut down)
+     */
+    public boolean addAppender(Appender appender) {
+        LoggerContext context = ctx;
+        if (context == null) {
+            return false;
+        }
+        // on the root config, Logger.addAppender would create a non additive logger config
+        // without the console and file appender
+        context.getConfiguration().getRootLogger().addAppender(appender, null, null);
+        context.updateLoggers();
+        return true;
+    }
+
+    /**
+     *
+     * @param appender added with {@link #addAppender(Appender)}, not stopped
+     */
+    public void removeAppender(Appender appender) {
+        LoggerContext context = ctx;
+        if (context != null) {
+            context.getConfiguration().getRootLogger().removeAppender(appender.getName());
+            context.updateLoggers();
+        }
+    }
+
     public void setLevel(Level level) {
         logger().setLevel(level);
     }
 
     public void debug(String message) {
+        messages.increment();
         if (logger() == null)
             fallbackLog(message);
         else
@@ -151,6 +214,7 @@ public class OZLogger {
     }
 
     public void info(String message) {
+        messages.increment();
         if (logger() == null)
             fallbackLog(message);
         else
@@ -158,6 +222,7 @@ public class OZLogger {
     }
 
     public void warn(String message) {
+        messages.increment();
         if (logger() == null)
             fallbackLog(message);
         else
@@ -165,6 +230,7 @@ public class OZLogger {
     }
 
     public void error(String message) {
+        messages.increment();
         if (logger() == null)
             fallbackLog(message);
         else
@@ -172,12 +238,26 @@ public class OZLogger {
     }
 
     public void fatal(String message) {
+        messages.increment();
         if (logger() == null)
             fallbackLog(message);
         else
             logger().fatal(message);
     }
 
+    /**
+     * Prints a line to the server console without writing it to the log file or
+     * the recent log buffer, e.g. for command output that shows logged lines
+     *
+     * @param message
+     */
+    public void console(String message) {
+        if (logger() == null)
+            fallbackLog(message);
+        else
+            logger().info(CONSOLE_ONLY, message);
+    }
+
     private void fallbackLog(String message) {
         System.out.println("[" + loggerName + "] 🆘 " + message);
     }
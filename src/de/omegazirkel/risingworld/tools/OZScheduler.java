@@ -0,0 +1,349 @@
+package de.omegazirkel.risingworld.tools;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+import de.omegazirkel.risingworld.tools.metrics.Counter;
+import de.omegazirkel.risingworld.tools.metrics.Histogram;
+import de.omegazirkel.risingworld.tools.metrics.Metrics;
+import net.risingworld.api.Plugin;
+
+/**
+ * Shared scheduler for the tools and all OZ plugins, so not every plugin and
+ * service needs its own (mostly idle) threads.
+ *
+ * Timed and periodic tasks run on a small scheduled pool and have to be short.
+ * Blocking work (I/O, database, endless loops) goes to
+ * {@link #executeBlocking(Runnable)}, which uses virtual threads if the JVM
+ * supports them and a cached daemon pool otherwise.
+ *
+ * Tasks are tracked per owner (usually the plugin), call {@link #shutdown()}
+ * in onDisable. Disabling the tools plugin (e.g. on {@code reloadplugins})
+ * flushes the open databases and then shuts down all owners, so tasks of
+ * reloaded plugins do not keep running. The shared threads are stopped once
+ * no owner is left and started again on demand.
+ *
+ * <pre>
+ * OZScheduler scheduler = OZScheduler.forPlugin(this);
+ * scheduler.scheduleAtFixedRate(this::announce, 5, 5, TimeUnit.MINUTES);
+ * scheduler.executeBlocking(() -> uploadStats());
+ * ...
+ * // onDisable
+ * scheduler.shutdown();
+ * </pre>
+ */
+public class OZScheduler {
+    private static final Map<String, OZScheduler> INSTANCES = new ConcurrentHashMap<>();
+
+    private static final Histogram DELAY = Metrics.histogram("scheduler.delay.micros");
+    private static final Histogram RUN = Metrics.histogram("scheduler.run.micros");
+    private static final Counter FAILURES = Metrics.counter("scheduler.failures");
+    private static final Counter BLOCKING = Metrics.counter("scheduler.blocking.started");
+
+    private static ScheduledThreadPoolExecutor pool = null;
+    private static ExecutorService blocking = null;
+    // read: registering an owner or submitting a task, write: removing an owner and stopping the pools
+    private static final ReentrantReadWriteLock LIFECYCLE = new ReentrantReadWriteLock();
+
+    private final String owner;
+    private final Set<Future<?>> tasks = ConcurrentHashMap.newKeySet();
+
+    private static OZLogger logger() {
+        return OZLogger.getInstance("OZ.Tools.Scheduler");
+    }
+
+    private OZScheduler(String owner) {
+        this.owner = owner;
+    }
+
+    /**
+     *
+     * @param owner name the tasks are tracked under
+     * @return
+     */
+    public static OZScheduler getInstance(String owner) {
+        LIFECYCLE.readLock().lock();
+        try {
+            return INSTANCES.computeIfAbsent(owner, k -> {
+                OZScheduler scheduler = new OZScheduler(owner);
+                Metrics.gauge("scheduler.tasks." + owner, scheduler::getTaskCount);
+                return scheduler;
+            });
+        } finally {
+            LIFECYCLE.readLock().unlock();
+        }
+    }
+
+    public static OZScheduler forPlugin(Plugin plugin) {
+        return getInstance(plugin.getName());
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     *
+     * @return number of scheduled, periodic and running tasks of this owner
+     */
+    public int getTaskCount() {
+        tasks.removeIf(Future::isDone);
+        return tasks.size();
+    }
+
+    // -----------------------------------------------------------------------------------
+    // Scheduled pool
+    // -----------------------------------------------------------------------------------
+
+    private static synchronized ScheduledThreadPoolExecutor pool() {
+        if (pool == null) {
+            int size = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+            pool = new ScheduledThreadPoolExecutor(size, daemonFactory("OZ-Scheduler-"));
+            pool.setRemoveOnCancelPolicy(true);
+            pool.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+            ScheduledThreadPoolExecutor p = pool;
+            Metrics.gauge("scheduler.queue", () -> p.getQueue().size());
+            Metrics.gauge("scheduler.active", p::getActiveCount);
+        }
+        return pool;
+    }
+
+    /**
+     * Runs a short task on the scheduled pool as soon as possible
+     *
+     * @param task
+     * @return
+     */
+    public Future<?> execute(Runnable task) {
+        return schedule(task, 0, TimeUnit.MILLISECONDS);
+    }
+
+    public ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+        return submit(() -> pool().schedule(wrap(task, System.nanoTime() + unit.toNanos(delay), 0), delay, unit));
+    }
+
+    /**
+     *
+     * @param task   runs again after it failed, the exception is logged
+     * @param delay  initial delay
+     * @param period
+     * @param unit
+     * @return
+     */
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long delay, long period, TimeUnit unit) {
+        return submit(() -> pool().scheduleAtFixedRate(wrap(task, System.nanoTime() + unit.toNanos(delay),
+                unit.toNanos(period)), delay, period, unit));
+    }
+
+    /**
+     *
+     * @param task   runs again after it failed, the exception is logged
+     * @param delay  initial delay
+     * @param period delay between the end of one run and the start of the next
+     * @param unit
+     * @return
+     */
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long delay, long period, TimeUnit unit) {
+        // the lateness of fixed delay runs is not known up front, only the first run is measured
+        return submit(() -> pool().scheduleWithFixedDelay(wrap(task, System.nanoTime() + unit.toNanos(delay), -1),
+                delay, period, unit));
+    }
+
+    // measures delay and run time, failures do not cancel periodic tasks
+    private Runnable wrap(Runnable task, long dueNanos, long periodNanos) {
+        long[] due = { dueNanos };
+        return () -> {
+            long start = System.nanoTime();
+            if (due[0] > 0) {
+                DELAY.record(Math.max(0, start - due[0]) / 1000);
+                due[0] = periodNanos > 0 ? due[0] + periodNanos : 0;
+            }
+            try {
+                task.run();
+            } catch (Exception e) {
+                FAILURES.increment();
+                logger().error("[" + owner + "] Task failed (" + e.getClass().getTypeName() + "): " + e.getMessage());
+            } finally {
+                RUN.record((System.nanoTime() - start) / 1000);
+            }
+        };
+    }
+
+    // -----------------------------------------------------------------------------------
+    // Blocking executor
+    // -----------------------------------------------------------------------------------
+
+    private static synchronized ExecutorService blocking() {
+        if (blocking == null) {
+            blocking = newVirtualThreadExecutor();
+            if (blocking == null) {
+                blocking = Executors.newCachedThreadPool(daemonFactory("OZ-Blocking-"));
+                logger().info("Virtual threads are not available, using a cached thread pool for blocking tasks");
+            }
+        }
+        return blocking;
+    }
+
+    // virtual threads are a preview API in the Java release the tools are compiled for
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Runs blocking work, e.g. I/O or a loop waiting on a queue, outside the
+     * scheduled pool
+     *
+     * @param task
+     * @return future that interrupts the task if cancelled
+     */
+    public Future<?> executeBlocking(Runnable task) {
+        BLOCKING.increment();
+        return submit(() -> blocking().submit(wrap(task, 0, 0)));
+    }
+
+    /**
+     *
+     * @param <T>
+     * @param task
+     * @return future that interrupts the task if cancelled
+     */
+    public <T> Future<T> submitBlocking(Callable<T> task) {
+        BLOCKING.increment();
+        return submit(() -> blocking().submit(task));
+    }
+
+    /**
+     *
+     * @param <T>
+     * @param supplier
+     * @return completes on the blocking thread
+     */
+    public <T> CompletableFuture<T> supplyBlocking(Supplier<T> supplier) {
+        BLOCKING.increment();
+        return submit(() -> CompletableFuture.supplyAsync(supplier, blocking()));
+    }
+
+    /**
+     * Executor for APIs that take one, e.g. {@link CompletableFuture}. Tasks
+     * submitted through it are not tracked.
+     *
+     * @return
+     */
+    public static ExecutorService getBlockingExecutor() {
+        return blocking();
+    }
+
+    // -----------------------------------------------------------------------------------
+    // Tracking and shutdown
+    // -----------------------------------------------------------------------------------
+
+    // the pools are not stopped while a task is submitted, an owner that was shut down is registered again
+    private <F extends Future<?>> F submit(Supplier<F> submission) {
+        LIFECYCLE.readLock().lock();
+        try {
+            if (INSTANCES.putIfAbsent(owner, this) == null) {
+                Metrics.gauge("scheduler.tasks." + owner, this::getTaskCount);
+            }
+            F future = submission.get();
+            tasks.add(future);
+            if (tasks.size() > 64) {
+                tasks.removeIf(Future::isDone);
+            }
+            return future;
+        } finally {
+            LIFECYCLE.readLock().unlock();
+        }
+    }
+
+    /**
+     * Cancels all tasks of this owner and interrupts running blocking tasks
+     *
+     * @return number of cancelled tasks
+     */
+    public int cancelAll() {
+        int cancelled = 0;
+        for (Future<?> task : tasks) {
+            if (task.cancel(true)) {
+                cancelled++;
+            }
+        }
+        tasks.clear();
+        if (cancelled > 0) {
+            logger().info("[" + owner + "] Cancelled " + cancelled + " tasks");
+        }
+        return cancelled;
+    }
+
+    /**
+     * Cancels all tasks of this owner and removes it, the shared threads are
+     * stopped if it was the last owner
+     */
+    public void shutdown() {
+        LIFECYCLE.writeLock().lock();
+        try {
+            cancelAll();
+            if (INSTANCES.remove(owner, this)) {
+                Metrics.remove("scheduler.tasks." + owner);
+            }
+            stopIfUnused();
+        } finally {
+            LIFECYCLE.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Shuts down all owners, called when the tools plugin is disabled after
+     * the open databases were flushed
+     *
+     * @return number of owners that were shut down
+     */
+    public static int shutdownAll() {
+        int owners = 0;
+        for (OZScheduler scheduler : INSTANCES.values()) {
+            scheduler.shutdown();
+            owners++;
+        }
+        return owners;
+    }
+
+    // stops the pools after the last owner is gone, they are started again on demand
+    private static synchronized void stopIfUnused() {
+        if (!INSTANCES.isEmpty()) {
+            return;
+        }
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+        if (blocking != null) {
+            blocking.shutdownNow();
+            blocking = null;
+        }
+    }
+
+    private static ThreadFactory daemonFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
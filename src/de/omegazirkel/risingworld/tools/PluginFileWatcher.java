@@ -9,31 +9,37 @@ import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
-
-public class PluginFileWatcher implements AutoCloseable {
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+
+import de.omegazirkel.risingworld.tools.metrics.Counter;
+import de.omegazirkel.risingworld.tools.metrics.Histogram;
+import de.omegazirkel.risingworld.tools.metrics.Metrics;
+
+public final class PluginFileWatcher implements AutoCloseable {
+    private static final Counter JAR_EVENTS = Metrics.counter("watcher.events.jar");
+    private static final Counter SETTINGS_EVENTS = Metrics.counter("watcher.events.settings");
+    private static final Counter OTHER_EVENTS = Metrics.counter("watcher.events.other");
+    // time spent in the listeners per event
+    private static final Histogram DISPATCH = Metrics.histogram("watcher.dispatch.micros");
+
+    private final Path rootDir;
     private final WatchService watchService;
     private final Map<WatchKey, Path> keyToPath = new HashMap<>();
-    private final List<FileChangeListener> listeners = new ArrayList<>();
-    private final Map<Path, FileChangeListener> settingsFiles = new HashMap<>();
+    private final List<FileChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<Path, FileChangeListener> settingsFiles = new ConcurrentHashMap<>();
     private final PluginReloadDebouncer jarDebouncer;
 
     private static OZLogger logger() {
         return OZLogger.getInstance("OZ.Tools.PluginFileWatcher");
     }
 
-    private final ExecutorService watcherThread = Executors.newSingleThreadExecutor(new ThreadFactory() {
-        @Override
-        public Thread newThread(Runnable r) {
-            Thread t = new Thread(r, "PluginFileWatcher-Thread");
-            t.setDaemon(true);
-            return t;
-        }
-    });
+    // blocking watch loop on the shared scheduler
+    private final Future<?> watcherThread;
 
     public PluginFileWatcher(Path rootDir, PluginReloadDebouncer jarDebouncer) throws IOException {
+        this.rootDir = rootDir.toAbsolutePath();
         this.watchService = FileSystems.getDefault().newWatchService();
         this.jarDebouncer = jarDebouncer;
 
@@ -41,7 +47,7 @@ public class PluginFileWatcher implements AutoCloseable {
         registerAll(rootDir);
 
         // start watch-service loop
-        watcherThread.submit(this::processEvents);
+        watcherThread = OZScheduler.getInstance("OZ.Tools").executeBlocking(this::processEvents);
     }
 
     public void addListener(FileChangeListener listener) {
@@ -128,11 +134,42 @@ public class PluginFileWatcher implements AutoCloseable {
         }
     }
 
-    private void handleFileEvent(WatchEvent.Kind<?> kind, Path path) {
+    // package-private for the benchmarks
+    void handleFileEvent(WatchEvent.Kind<?> kind, Path path) {
+        FileWatchEvent event = new FileWatchEvent();
+        event.begin();
+        long start = System.nanoTime();
+        String type = dispatch(path);
+        DISPATCH.record((System.nanoTime() - start) / 1000);
+        if (event.shouldCommit()) {
+            event.plugin = pluginOf(path);
+            event.path = path.toString();
+            event.kind = kind.name();
+            event.type = type;
+            event.commit();
+        }
+    }
+
+    // first directory below the plugins root, null for files in the root
+    private String pluginOf(Path path) {
+        Path absolute = path.toAbsolutePath();
+        if (!absolute.startsWith(rootDir) || absolute.getNameCount() - rootDir.getNameCount() < 2) {
+            return null;
+        }
+        return absolute.getName(rootDir.getNameCount()).toString();
+    }
+
+    /**
+     *
+     * @param path
+     * @return jar, settings or other
+     */
+    private String dispatch(Path path) {
         String filename = path.getFileName().toString().toLowerCase();
 
         // check if jar
         if (filename.endsWith(".jar")) {
+            JAR_EVENTS.increment();
             jarDebouncer.jarChanged(path);
             // notify other listeners for Jar-change
             for (FileChangeListener l : listeners) {
@@ -142,9 +179,11 @@ public class PluginFileWatcher implements AutoCloseable {
                     logger().fatal("onJarChanged: " + e.getMessage());
                 }
             }
+            return "jar";
         }
         // check for settings.properties
         else if (filename.equals("settings.properties")) {
+            SETTINGS_EVENTS.increment();
             FileChangeListener listener = settingsFiles.get(path.toAbsolutePath());
 
             if (listener != null) {
@@ -153,9 +192,11 @@ public class PluginFileWatcher implements AutoCloseable {
                 // falls Settings-Datei nicht registriert ist → ignorieren
                 logger().info("ℹ️ Unknown settings.properties changed: " + path);
             }
+            return "settings";
         }
         // other files
         else {
+            OTHER_EVENTS.increment();
             for (FileChangeListener l : listeners) {
                 try {
                     l.onOtherFileChanged(path);
@@ -163,12 +204,13 @@ public class PluginFileWatcher implements AutoCloseable {
                     logger().fatal("onOtherFileChanged: " + e.getMessage());
                 }
             }
+            return "other";
         }
     }
 
     @Override
     public void close() {
-        watcherThread.shutdownNow();
+        watcherThread.cancel(true);
         try {
             watchService.close();
         } catch (IOException io) {
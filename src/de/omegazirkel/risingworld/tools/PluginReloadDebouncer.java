@@ -1,42 +1,53 @@
 package de.omegazirkel.risingworld.tools;
 
 import java.nio.file.Path;
-import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public class PluginReloadDebouncer {
-    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> { Thread t = new Thread(r, "PluginReloadDebouncer-Thread"); t.setDaemon(true); return t; });
-    private final AtomicReference<ScheduledFuture<?>> scheduledTask = new AtomicReference<>();
-    private final Runnable reloadAction;
-    private final long delay;
-    private final TimeUnit unit;
+import de.omegazirkel.risingworld.tools.metrics.Counter;
+import de.omegazirkel.risingworld.tools.metrics.Metrics;
 
-    public PluginReloadDebouncer(Runnable reloadAction, long delay, TimeUnit unit) {
-        this.reloadAction = reloadAction;
-        this.delay = delay;
-        this.unit = unit;
-    }
+/**
+ * Runs the reload action once no jar changed for the delay
+ */
+public class PluginReloadDebouncer {
+    private static final Counter CHANGES = Metrics.counter("debouncer.changes");
+    private static final Counter FIRED = Metrics.counter("debouncer.fired");
+    // all jars share one key, the action reloads all plugins
+    private static final String RELOAD = "reload";
 
-    public void jarChanged(Path changedJar) {
-        // If timer is active: cancel it
-        ScheduledFuture<?> prev = scheduledTask.getAndSet(null);
-        if (prev != null && !prev.isDone()) {
-            prev.cancel(false);
-        }
+    private final KeyedDebouncer<String> debouncer;
+    // changes since the last reload, for the JFR event
+    private final AtomicInteger pendingChanges = new AtomicInteger();
+    private volatile Path lastJar;
 
-        // start new Timer
-        ScheduledFuture<?> newTask = scheduler.schedule(() -> {
-            try {
-                reloadAction.run();
-            } catch (Exception e) {
-                e.printStackTrace();
+    public PluginReloadDebouncer(Runnable reloadAction, long delay, TimeUnit unit) {
+        this.debouncer = new KeyedDebouncer<String>(key -> {
+            FIRED.increment();
+            // instant event, the action only schedules the reload which disables this plugin
+            PluginReloadEvent event = new PluginReloadEvent();
+            int changes = pendingChanges.getAndSet(0);
+            if (event.shouldCommit()) {
+                Path jar = lastJar;
+                event.changes = changes;
+                if (jar != null) {
+                    event.jar = jar.toString();
+                    event.plugin = jar.getParent() != null ? jar.getParent().getFileName().toString() : null;
+                }
+                event.commit();
             }
+            reloadAction.run();
         }, delay, unit);
+    }
 
-        scheduledTask.set(newTask);
+    public void jarChanged(Path changedJar) {
+        CHANGES.increment();
+        pendingChanges.incrementAndGet();
+        lastJar = changedJar;
+        debouncer.call(RELOAD);
     }
 
     public void shutdown() {
-        scheduler.shutdownNow();
+        debouncer.cancelAll();
     }
 }
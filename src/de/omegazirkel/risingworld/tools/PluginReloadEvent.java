@@ -0,0 +1,31 @@
+package de.omegazirkel.risingworld.tools;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR instant event for a firing of the {@link PluginReloadDebouncer}, it marks
+ * when the reload was triggered and has no duration (the reload itself runs
+ * later and disables the tools plugin)
+ */
+@Name("de.omegazirkel.tools.PluginReload")
+@Label("Plugin Reload Triggered")
+@Category({ "OZ Tools", "Plugins" })
+@Description("Reload triggered by the jar change debouncer, without duration")
+@StackTrace(false)
+class PluginReloadEvent extends jdk.jfr.Event {
+    @Label("Plugin")
+    @Description("Plugin of the last changed jar")
+    String plugin;
+
+    @Label("Jar")
+    @Description("Last changed jar before the reload")
+    String jar;
+
+    @Label("Changes")
+    @Description("Jar changes merged into this reload")
+    int changes;
+}
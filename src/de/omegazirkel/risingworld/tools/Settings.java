@@ -0,0 +1,233 @@
+package de.omegazirkel.risingworld.tools;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of a settings.properties file with typed getters.
+ *
+ * Values that can not be parsed are logged and the default is returned.
+ * Parse the values you need once per change into your own immutable object,
+ * see {@link SettingsFile}, instead of calling the getters on every access.
+ */
+public final class Settings {
+    private final Map<String, String> values;
+
+    private static OZLogger logger() {
+        return OZLogger.getInstance("OZ.Tools.Settings");
+    }
+
+    private Settings(Map<String, String> values) {
+        this.values = Collections.unmodifiableMap(values);
+    }
+
+    /**
+     *
+     * @param properties
+     * @return snapshot of the properties, values are trimmed
+     */
+    public static Settings of(Properties properties) {
+        Map<String, String> values = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            values.put(key, properties.getProperty(key).trim());
+        }
+        return new Settings(values);
+    }
+
+    /**
+     *
+     * @param file UTF-8 properties file
+     * @return
+     * @throws IOException
+     */
+    public static Settings load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+        return of(properties);
+    }
+
+    public static Settings empty() {
+        return new Settings(new HashMap<>());
+    }
+
+    public boolean has(String key) {
+        return values.containsKey(key);
+    }
+
+    public Set<String> keys() {
+        return values.keySet();
+    }
+
+    public String getString(String key, String defaultValue) {
+        return values.getOrDefault(key, defaultValue);
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = values.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return invalid(key, value, defaultValue);
+        }
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = values.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return invalid(key, value, defaultValue);
+        }
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        String value = values.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return invalid(key, value, defaultValue);
+        }
+    }
+
+    /**
+     *
+     * @param key
+     * @param defaultValue
+     * @return true for "true", "yes", "on" and "1"
+     */
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = values.get(key);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        return switch (value.toLowerCase()) {
+            case "true", "yes", "on", "1" -> true;
+            case "false", "no", "off", "0" -> false;
+            default -> invalid(key, value, defaultValue);
+        };
+    }
+
+    /**
+     *
+     * @param key
+     * @param defaultValue
+     * @return value like 500ms, 30s, 5m, 2h or 1d, a plain number is read as
+     *         seconds
+     */
+    public Duration getDuration(String key, Duration defaultValue) {
+        String value = values.get(key);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        String v = value.toLowerCase();
+        try {
+            if (v.endsWith("ms"))
+                return Duration.ofMillis(Long.parseLong(v.substring(0, v.length() - 2).trim()));
+            if (v.endsWith("s"))
+                return Duration.ofSeconds(Long.parseLong(v.substring(0, v.length() - 1).trim()));
+            if (v.endsWith("m"))
+                return Duration.ofMinutes(Long.parseLong(v.substring(0, v.length() - 1).trim()));
+            if (v.endsWith("h"))
+                return Duration.ofHours(Long.parseLong(v.substring(0, v.length() - 1).trim()));
+            if (v.endsWith("d"))
+                return Duration.ofDays(Long.parseLong(v.substring(0, v.length() - 1).trim()));
+            return Duration.ofSeconds(Long.parseLong(v));
+        } catch (NumberFormatException e) {
+            return invalid(key, value, defaultValue);
+        }
+    }
+
+    /**
+     *
+     * @param key
+     * @return comma separated values, trimmed, without empty entries
+     */
+    public List<String> getList(String key) {
+        String value = values.get(key);
+        if (value == null || value.isEmpty()) {
+            return List.of();
+        }
+        List<String> list = new ArrayList<>();
+        for (String entry : value.split(",")) {
+            if (!entry.isBlank()) {
+                list.add(entry.trim());
+            }
+        }
+        return List.copyOf(list);
+    }
+
+    private <T> T invalid(String key, String value, T defaultValue) {
+        logger().warn("⚠️ Invalid value for " + key + ": '" + value + "', using " + defaultValue);
+        return defaultValue;
+    }
+
+    /**
+     *
+     * @param other
+     * @return keys that were added, removed or changed compared to the other
+     *         snapshot
+     */
+    public Set<String> diff(Settings other) {
+        Set<String> changed = new HashSet<>();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            if (!entry.getValue().equals(other.values.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (String key : other.values.keySet()) {
+            if (!values.containsKey(key)) {
+                changed.add(key);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     *
+     * @return a mutable copy, e.g. for APIs that still take Properties
+     */
+    public Properties toProperties() {
+        Properties properties = new Properties();
+        properties.putAll(values);
+        return properties;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Settings other && values.equals(other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return values.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return values.toString();
+    }
+}
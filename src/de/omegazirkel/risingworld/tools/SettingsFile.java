@@ -0,0 +1,170 @@
+package de.omegazirkel.risingworld.tools;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * A settings.properties file parsed into an immutable config object of your
+ * plugin, swapped atomically when the file changes.
+ *
+ * The parser runs once per change, readers only do a volatile read and plain
+ * field access. If the parser fails the previous config stays active.
+ *
+ * <pre>
+ * record Config(boolean joinMessage, int maxHomes, Duration cooldown) {
+ *     static Config of(Settings s) {
+ *         return new Config(s.getBoolean("joinMessage", true), s.getInt("maxHomes", 3),
+ *                 s.getDuration("cooldown", Duration.ofSeconds(30)));
+ *     }
+ * }
+ *
+ * SettingsFile&lt;Config&gt; settings = new SettingsFile&lt;&gt;(Paths.get(getPath(), "settings.properties"), Config::of);
+ * settings.addListener((oldConfig, newConfig, changedKeys) -&gt; logger().info("Changed: " + changedKeys));
+ * ...
+ * if (settings.get().joinMessage()) { ... }
+ * </pre>
+ *
+ * Plugins implementing {@link FileChangeListener} are registered for their
+ * settings.properties by the tools, forward {@code onSettingsChanged} to
+ * {@link #onSettingsChanged(Path)} or register it with
+ * {@link #watch(PluginFileWatcher)}.
+ *
+ * @param <T> immutable config type
+ */
+public class SettingsFile<T> implements FileChangeListener {
+    private final Path path;
+    private final Function<Settings, T> parser;
+    private final List<ChangeListener<T>> listeners = new CopyOnWriteArrayList<>();
+
+    // published together so settings and config always match
+    private record Snapshot<T>(Settings settings, T config) {
+    }
+
+    private volatile Snapshot<T> current;
+
+    private static OZLogger logger() {
+        return OZLogger.getInstance("OZ.Tools.Settings");
+    }
+
+    /**
+     * Called after a new config was published
+     *
+     * @param <T>
+     */
+    @FunctionalInterface
+    public interface ChangeListener<T> {
+        void onChange(T oldConfig, T newConfig, Set<String> changedKeys);
+    }
+
+    /**
+     * Reads the file, an unreadable file results in the defaults of the parser
+     *
+     * @param path
+     * @param parser builds the config from a snapshot, must not keep a
+     *               reference to mutable state
+     */
+    public SettingsFile(Path path, Function<Settings, T> parser) {
+        this.path = path.toAbsolutePath();
+        this.parser = parser;
+        Settings settings;
+        try {
+            settings = Settings.load(this.path);
+        } catch (Exception e) {
+            logger().fatal("❌ Could not read " + this.path + " (" + e.getClass().getTypeName() + "): "
+                    + e.getMessage() + ", using defaults");
+            settings = Settings.empty();
+        }
+        T config;
+        try {
+            config = parser.apply(settings);
+        } catch (RuntimeException e) {
+            logger().fatal("❌ Invalid settings in " + this.path + " (" + e.getClass().getTypeName() + "): "
+                    + e.getMessage() + ", using defaults");
+            settings = Settings.empty();
+            config = parser.apply(settings);
+        }
+        this.current = new Snapshot<>(settings, config);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     *
+     * @return the current config
+     */
+    public T get() {
+        return current.config();
+    }
+
+    /**
+     *
+     * @return the raw values of the current config
+     */
+    public Settings getSettings() {
+        return current.settings();
+    }
+
+    public SettingsFile<T> addListener(ChangeListener<T> listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    public void removeListener(ChangeListener<T> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Reloads the file whenever the watcher reports a change
+     *
+     * @param watcher
+     * @return
+     */
+    public SettingsFile<T> watch(PluginFileWatcher watcher) {
+        watcher.addSettingsFile(path, this);
+        return this;
+    }
+
+    /**
+     * Reads the file again and publishes a new config if any value changed
+     *
+     * @return true if a new config was published
+     */
+    public synchronized boolean reload() {
+        Snapshot<T> previous = current;
+        Settings settings;
+        T config;
+        try {
+            settings = Settings.load(path);
+            if (settings.equals(previous.settings())) {
+                return false;
+            }
+            config = parser.apply(settings);
+        } catch (Exception e) {
+            logger().fatal("❌ Reloading " + path + " failed, keeping the previous settings ("
+                    + e.getClass().getTypeName() + "): " + e.getMessage());
+            return false;
+        }
+        current = new Snapshot<>(settings, config);
+
+        Set<String> changed = settings.diff(previous.settings());
+        logger().info("ℹ️ Settings reloaded: " + path + " changed " + changed);
+        for (ChangeListener<T> listener : listeners) {
+            try {
+                listener.onChange(previous.config(), config, changed);
+            } catch (Exception e) {
+                logger().error("Settings listener failed (" + e.getClass().getTypeName() + "): " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void onSettingsChanged(Path settingsPath) {
+        reload();
+    }
+}
@@ -1,21 +1,15 @@
 package de.omegazirkel.risingworld.tools;
 
-import java.io.File;
 import java.net.URI;
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import de.omegazirkel.risingworld.tools.metrics.Counter;
+import de.omegazirkel.risingworld.tools.metrics.Metrics;
 import jakarta.websocket.ClientEndpoint;
 import jakarta.websocket.CloseReason;
 import jakarta.websocket.ContainerProvider;
@@ -34,8 +28,21 @@ public class WSClientEndpoint {
 	private final URI endpointUri;
 
 	private WebSocketHandler handler;
-	private WebSocketContainer container;
-	private ClassLoader extendedClassLoader;
+	// created on the first connect, reset by shutdown() on another thread
+	private volatile WebSocketContainer container;
+
+	private static final Counter SENT = Metrics.counter("ws.messages.sent");
+	private static final Counter SEND_DROPPED = Metrics.counter("ws.messages.dropped");
+	private static final Counter RECEIVED = Metrics.counter("ws.messages.received");
+	private static final Counter CONNECTS = Metrics.counter("ws.connects");
+	private static final Counter CONNECT_FAILURES = Metrics.counter("ws.connects.failed");
+	private static final Counter DISCONNECTS = Metrics.counter("ws.disconnects");
+	private static final Counter ERRORS = Metrics.counter("ws.errors");
+	static {
+		Metrics.gauge("ws.clients", INSTANCES::size);
+		Metrics.gauge("ws.clients.connected",
+				() -> INSTANCES.values().stream().filter(WSClientEndpoint::isConnected).count());
+	}
 
 	private static OZLogger logger() {
 		return OZLogger.getInstance("OZ.Tools.WSCE");
@@ -51,12 +58,9 @@ public class WSClientEndpoint {
 	private final AtomicBoolean isShuttingDown = new AtomicBoolean(false);
 	private final AtomicBoolean isReconnectLoopActive = new AtomicBoolean(false);
 
-	// Executor for reconnect attempts + async connect
-	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
-		Thread th = new Thread(r, "WebSocket-Reconnect");
-		th.setDaemon(true);
-		return th;
-	});
+	// Shared scheduler for reconnect attempts + async connect
+	private final OZScheduler scheduler = OZScheduler.getInstance("OZ.Tools.WSCE");
+	private volatile ScheduledFuture<?> reconnectLoop;
 
 	public WSClientEndpoint(URI uri) {
 		this.endpointUri = uri;
@@ -109,14 +113,14 @@ public class WSClientEndpoint {
 
 		// Start the reconnect loop only once on the first call
 		if (isReconnectLoopActive.compareAndSet(false, true)) {
-			scheduler.scheduleAtFixedRate(this::reconnectTask, 0, 60, TimeUnit.SECONDS);
+			reconnectLoop = scheduler.scheduleAtFixedRate(this::reconnectTask, 0, 60, TimeUnit.SECONDS);
 		}
 
 		if (isConnected.get())
 			return;
 
 		logger().info("[WebSocket] Attempting connection to " + endpointUri);
-		connectAsync();
+		connectAsync(false);
 	}
 
 	/** The actual task that is scheduled to run periodically. */
@@ -124,74 +128,73 @@ public class WSClientEndpoint {
 		if (isShuttingDown.get() || isConnected.get()) {
 			return;
 		}
-		connectAsync();
+		connectAsync(true);
 	}
 
 	/** Connects without blocking the server thread */
-	private void connectAsync() {
-		CompletableFuture.runAsync(() -> {
-			// Temporarily switch the ClassLoader for this thread
-			// This allows ServiceLoader (used by ContainerProvider) to find Tyrus in the
-			// /lib folder.
-			ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+	private void connectAsync(boolean reconnect) {
+		scheduler.executeBlocking(() -> {
+			WebSocketConnectEvent event = new WebSocketConnectEvent();
+			event.begin();
 			try {
-				if (extendedClassLoader == null)
-					extendedClassLoader = getExtendedClassLoader(originalClassLoader);
-				Thread.currentThread().setContextClassLoader(extendedClassLoader);
-
-				container = ContainerProvider.getWebSocketContainer();
-				if (container == null) {
-					throw new IllegalStateException(
-							"Could not find a WebSocketContainer implementation. Check if Tyrus JARs are in the /lib directory.");
-				}
-				container.setDefaultMaxSessionIdleTimeout(0);
-
-				Session newSession = container.connectToServer(this, endpointUri);
+				// ServiceLoader (used by ContainerProvider) and Tyrus' own lookups during the
+				// handshake find the /lib jars through the shared dependency class loader
+				Session newSession = DependencyClassLoader.get().withContext(() -> {
+					WebSocketContainer c = getContainer();
+					c.setDefaultMaxSessionIdleTimeout(0);
+					return c.connectToServer(this, endpointUri);
+				});
 
 				this.session = newSession;
 				// onOpen will be called, which sets isConnected and logs the success
+				event.success = true;
 
 			} catch (Exception ex) {
 				isConnected.set(false);
+				CONNECT_FAILURES.increment();
 				logger().warn("❌ WebSocket connection failed: " + ex.getMessage());
-				// Optional: Log the class loader hierarchy for debugging
-				// logger().debug("ClassLoader used: " +
-				// Thread.currentThread().getContextClassLoader().toString());
-			} finally {
-				// IMPORTANT: Always restore the original ClassLoader
-				Thread.currentThread().setContextClassLoader(originalClassLoader);
+				event.error = ex.getClass().getSimpleName() + ": " + ex.getMessage();
+			}
+			if (event.shouldCommit()) {
+				event.uri = endpointUri.toString();
+				event.handler = handlerName();
+				event.reconnect = reconnect;
+				event.commit();
 			}
 		});
 	}
 
-	/**
-	 * Creates a new ClassLoader that includes all JARs from the 'lib' directory.
-	 * 
-	 * @param parent The parent classloader.
-	 * @return A new URLClassLoader.
-	 */
-	private ClassLoader getExtendedClassLoader(ClassLoader parent) {
-		try {
-			File pluginJarFile = new File(
-					WSClientEndpoint.class.getProtectionDomain().getCodeSource().getLocation().toURI());
-			File libDir = new File(pluginJarFile.getParentFile(), "lib");
-
-			if (!libDir.exists() || !libDir.isDirectory()) {
-				logger().warn("⚠️ 'lib' directory not found at: " + libDir.getAbsolutePath()
-						+ ". Dependencies will not be loaded.");
-				return parent; // Return original if no lib dir
-			}
+	// the first connect and the reconnect loop may start at the same time, only one container is created
+	private synchronized WebSocketContainer getContainer() {
+		WebSocketContainer c = container;
+		if (c == null) {
+			long start = System.nanoTime();
+			c = ContainerProvider.getWebSocketContainer();
+			logger().debug("🪲 WebSocket container created in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+		}
+		if (c == null) {
+			throw new IllegalStateException(
+					"Could not find a WebSocketContainer implementation. Check if Tyrus JARs are in the /lib directory.");
+		}
+		container = c;
+		return c;
+	}
 
-			File[] jarFiles = libDir.listFiles((dir, name) -> name.toLowerCase().endsWith(".jar"));
-			List<URL> urls = new ArrayList<>();
-			for (File jar : Objects.requireNonNull(jarFiles)) {
-				urls.add(jar.toURI().toURL());
-			}
+	private String handlerName() {
+		WebSocketHandler h = handler;
+		return h != null ? h.getClass().getName() : null;
+	}
 
-			return new URLClassLoader(urls.toArray(new URL[0]), parent);
-		} catch (Exception e) {
-			logger().error("❌ Failed to create extended ClassLoader: " + e.getMessage());
-			return parent; // Fallback to original
+	private void commitMessage(WebSocketMessageEvent event, String direction, boolean binary, long bytes,
+			boolean dropped) {
+		if (event.shouldCommit()) {
+			event.uri = endpointUri.toString();
+			event.handler = handlerName();
+			event.direction = direction;
+			event.binary = binary;
+			event.bytes = bytes;
+			event.dropped = dropped;
+			event.commit();
 		}
 	}
 
@@ -203,6 +206,7 @@ public class WSClientEndpoint {
 	public void onOpen(Session session) {
 		this.session = session;
 		isConnected.set(true);
+		CONNECTS.increment();
 		logger().info("🔌 WebSocket connection opened");
 		if (handler != null)
 			handler.onConnected(this);
@@ -211,23 +215,35 @@ public class WSClientEndpoint {
 
 	@OnMessage
 	public void onMessage(String message) {
+		WebSocketMessageEvent event = new WebSocketMessageEvent();
+		event.begin();
+		RECEIVED.increment();
 		logger().info("📩 Received: " + message);
 		// Forward to your tools logic if necessary
 		if (handler != null)
 			handler.onTextMessage(message);
+		if (event.isEnabled())
+			commitMessage(event, "receive", false, utf8Length(message), false);
 
 	}
 
 	@OnMessage
 	public void onMessage(ByteBuffer buffer) {
-		logger().info("📩 Received (binary) " + buffer.remaining() + " bytes");
+		WebSocketMessageEvent event = new WebSocketMessageEvent();
+		event.begin();
+		int bytes = buffer.remaining();
+		RECEIVED.increment();
+		logger().info("📩 Received (binary) " + bytes + " bytes");
 		if (handler != null)
 			handler.onBinaryMessage(buffer);
+		if (event.isEnabled())
+			commitMessage(event, "receive", true, bytes, false);
 
 	}
 
 	@OnError
 	public void onError(Throwable t) {
+		ERRORS.increment();
 		logger().warn("⚠️ WebSocket error: " + t.getMessage());
 	}
 
@@ -235,6 +251,7 @@ public class WSClientEndpoint {
 	public void onClose(Session session, CloseReason reason) {
 		isConnected.set(false);
 		this.session = null;
+		DISCONNECTS.increment();
 		logger().warn("🔌 WebSocket disconnected: " + reason);
 		if (handler != null)
 			handler.onDisconnected();
@@ -246,21 +263,60 @@ public class WSClientEndpoint {
 	// -----------------------------------------------------------------------------------
 
 	public boolean send(String msg) {
+		WebSocketMessageEvent event = new WebSocketMessageEvent();
+		event.begin();
 		ensureConnected(); // Ensure the connection logic is active
-		if (!isConnected.get() || session == null || !session.isOpen())
+		if (!isConnected.get() || session == null || !session.isOpen()) {
+			SEND_DROPPED.increment();
+			if (event.isEnabled())
+				commitMessage(event, "send", false, utf8Length(msg), true);
 			return false;
+		}
 		session.getAsyncRemote().sendText(msg);
+		SENT.increment();
+		if (event.isEnabled())
+			commitMessage(event, "send", false, utf8Length(msg), false);
 		return true;
 	}
 
 	public boolean send(ByteBuffer data) {
+		WebSocketMessageEvent event = new WebSocketMessageEvent();
+		event.begin();
+		// the async write may consume the buffer
+		int bytes = data.remaining();
 		ensureConnected(); // Ensure the connection logic is active
-		if (!isConnected.get() || session == null || !session.isOpen())
+		if (!isConnected.get() || session == null || !session.isOpen()) {
+			SEND_DROPPED.increment();
+			if (event.isEnabled())
+				commitMessage(event, "send", true, bytes, true);
 			return false;
+		}
 		session.getAsyncRemote().sendBinary(data);
+		SENT.increment();
+		if (event.isEnabled())
+			commitMessage(event, "send", true, bytes, false);
 		return true;
 	}
 
+	// encoded size without encoding the message
+	private static long utf8Length(String s) {
+		long bytes = 0;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				bytes++;
+			} else if (c < 0x800) {
+				bytes += 2;
+			} else if (Character.isHighSurrogate(c)) {
+				bytes += 4;
+				i++;
+			} else {
+				bytes += 3;
+			}
+		}
+		return bytes;
+	}
+
 	public boolean isConnected() {
 		return isConnected.get();
 	}
@@ -271,7 +327,9 @@ public class WSClientEndpoint {
 
 		isShuttingDown.set(true);
 
-		scheduler.shutdownNow();
+		ScheduledFuture<?> loop = reconnectLoop;
+		if (loop != null)
+			loop.cancel(false);
 
 		if (session != null) {
 			try {
@@ -283,9 +341,11 @@ public class WSClientEndpoint {
 		}
 
 		// Shutdown the underlying Tyrus/Grizzly container
-		if (container instanceof org.glassfish.tyrus.client.ClientManager) {
+		WebSocketContainer c = container;
+		container = null;
+		if (c instanceof org.glassfish.tyrus.client.ClientManager manager) {
 			try {
-				((org.glassfish.tyrus.client.ClientManager) container).shutdown();
+				manager.shutdown();
 				logger().info("🔌 WebSocket container shut down.");
 			} catch (Exception e) {
 				logger().warn("⚠️ Error shutting down WebSocket container: " + e.getMessage());
@@ -0,0 +1,35 @@
+package de.omegazirkel.risingworld.tools;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for a connect or reconnect attempt of a {@link WSClientEndpoint},
+ * including the creation of the WebSocket container on the first attempt
+ */
+@Name("de.omegazirkel.tools.WebSocketConnect")
+@Label("WebSocket Connect")
+@Category({ "OZ Tools", "WebSocket" })
+@Description("WebSocket connect or reconnect attempt")
+@StackTrace(false)
+class WebSocketConnectEvent extends jdk.jfr.Event {
+    @Label("URI")
+    String uri;
+
+    @Label("Handler")
+    @Description("Class of the WebSocketHandler, tells which plugin uses the connection")
+    String handler;
+
+    @Label("Reconnect")
+    @Description("Attempt of the reconnect loop")
+    boolean reconnect;
+
+    @Label("Success")
+    boolean success;
+
+    @Label("Error")
+    String error;
+}
@@ -0,0 +1,40 @@
+package de.omegazirkel.risingworld.tools;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for a message sent or received by a {@link WSClientEndpoint}. A
+ * send only covers queueing the message (the write is asynchronous), a receive
+ * covers the handler.
+ */
+@Name("de.omegazirkel.tools.WebSocketMessage")
+@Label("WebSocket Message")
+@Category({ "OZ Tools", "WebSocket" })
+@Description("WebSocket message sent or received")
+class WebSocketMessageEvent extends jdk.jfr.Event {
+    @Label("URI")
+    String uri;
+
+    @Label("Handler")
+    @Description("Class of the WebSocketHandler, tells which plugin uses the connection")
+    String handler;
+
+    @Label("Direction")
+    @Description("send or receive")
+    String direction;
+
+    @Label("Binary")
+    boolean binary;
+
+    @Label("Size")
+    @DataAmount
+    long bytes;
+
+    @Label("Dropped")
+    @Description("Not sent because the connection is not open")
+    boolean dropped;
+}
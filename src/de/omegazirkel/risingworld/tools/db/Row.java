@@ -0,0 +1,125 @@
+package de.omegazirkel.risingworld.tools.db;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cursor view on the current row of a query, handed to {@link RowMapper} and
+ * {@link RowConsumer}.
+ *
+ * The same instance is reused for every row of a query, do not keep a
+ * reference to it. Column names are resolved to indexes once per query,
+ * the getters delegate to the primitive getters of the {@link ResultSet}.
+ */
+public final class Row {
+    private final ResultSet rs;
+    private Map<String, Integer> columns = null;
+
+    Row(ResultSet rs) {
+        this.rs = rs;
+    }
+
+    /**
+     *
+     * @param name column label, case insensitive
+     * @return 1-based column index
+     * @throws SQLException if the column does not exist
+     */
+    public int column(String name) throws SQLException {
+        if (columns == null) {
+            ResultSetMetaData meta = rs.getMetaData();
+            int count = meta.getColumnCount();
+            columns = new HashMap<>(count * 4);
+            for (int i = count; i >= 1; i--) {
+                // iterate backwards so the first column wins on duplicate labels
+                String label = meta.getColumnLabel(i);
+                columns.put(label, i);
+                columns.put(label.toLowerCase(), i);
+            }
+        }
+        Integer index = columns.get(name);
+        if (index == null) {
+            index = columns.get(name.toLowerCase());
+        }
+        if (index == null) {
+            throw new SQLException("No such column: " + name);
+        }
+        return index;
+    }
+
+    public int getInt(int column) throws SQLException {
+        return rs.getInt(column);
+    }
+
+    public int getInt(String column) throws SQLException {
+        return rs.getInt(column(column));
+    }
+
+    public long getLong(int column) throws SQLException {
+        return rs.getLong(column);
+    }
+
+    public long getLong(String column) throws SQLException {
+        return rs.getLong(column(column));
+    }
+
+    public float getFloat(int column) throws SQLException {
+        return rs.getFloat(column);
+    }
+
+    public float getFloat(String column) throws SQLException {
+        return rs.getFloat(column(column));
+    }
+
+    public double getDouble(int column) throws SQLException {
+        return rs.getDouble(column);
+    }
+
+    public double getDouble(String column) throws SQLException {
+        return rs.getDouble(column(column));
+    }
+
+    public boolean getBoolean(int column) throws SQLException {
+        return rs.getBoolean(column);
+    }
+
+    public boolean getBoolean(String column) throws SQLException {
+        return rs.getBoolean(column(column));
+    }
+
+    public String getString(int column) throws SQLException {
+        return rs.getString(column);
+    }
+
+    public String getString(String column) throws SQLException {
+        return rs.getString(column(column));
+    }
+
+    public byte[] getBytes(int column) throws SQLException {
+        return rs.getBytes(column);
+    }
+
+    public byte[] getBytes(String column) throws SQLException {
+        return rs.getBytes(column(column));
+    }
+
+    /**
+     *
+     * @return true if the last column read was SQL NULL
+     * @throws SQLException
+     */
+    public boolean wasNull() throws SQLException {
+        return rs.wasNull();
+    }
+
+    /**
+     *
+     * @return the underlying result set, positioned on this row
+     */
+    public ResultSet getResultSet() {
+        return rs;
+    }
+}
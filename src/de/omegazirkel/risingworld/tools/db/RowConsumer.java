@@ -0,0 +1,11 @@
+package de.omegazirkel.risingworld.tools.db;
+
+import java.sql.SQLException;
+
+/**
+ * Receives every row of a query without creating intermediate objects
+ */
+@FunctionalInterface
+public interface RowConsumer {
+    void accept(Row row) throws SQLException;
+}
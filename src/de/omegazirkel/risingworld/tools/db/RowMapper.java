@@ -0,0 +1,11 @@
+package de.omegazirkel.risingworld.tools.db;
+
+import java.sql.SQLException;
+
+/**
+ * Maps the current row of a query to an object
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+    T map(Row row) throws SQLException;
+}
@@ -1,22 +1,61 @@
 package de.omegazirkel.risingworld.tools.db;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetFactory;
+import javax.sql.rowset.RowSetProvider;
 
 import de.omegazirkel.risingworld.tools.OZLogger;
+import de.omegazirkel.risingworld.tools.OZScheduler;
+import de.omegazirkel.risingworld.tools.metrics.Metrics;
 import net.risingworld.api.Plugin;
 import net.risingworld.api.World;
 import net.risingworld.api.database.Database;
 
 /**
- * A wrapper class for SQLite Database
+ * A wrapper class for SQLite Database, the connection is opened on first use
  */
 public class SQLite {
     private Plugin plugin = null;
-    private Database db = null;
+    private volatile Database db = null;
+    private volatile SQLiteReadPool readPool = null;
+    private SQLiteWriteQueue writeQueue = null;
+    private SQLiteCheckpointer checkpointer = null;
+    private final SQLiteProfile profile;
+    // journal mode reported by SQLite after the profile was applied
+    private volatile boolean wal = false;
+    private final Map<String, SQLiteKeyValueStore> keyValueStores = new ConcurrentHashMap<>();
+    private int writeBatchSize = SQLiteWriteQueue.DEFAULT_MAX_BATCH_SIZE;
+    private long writeBatchDelayMs = SQLiteWriteQueue.DEFAULT_MAX_DELAY_MS;
+    // keeps synchronous writes out of an open write-behind transaction
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private static volatile SQLiteProfile defaultProfile = SQLiteProfile.defaults();
+    // opened and not destroyed yet, closed by destroyAll() when the tools plugin is disabled
+    private static final Set<SQLite> OPEN = ConcurrentHashMap.newKeySet();
+    // creates the disconnected results of executeQuery
+    private static RowSetFactory rowSetFactory = null;
 
     public static OZLogger logger() {
-        return OZLogger.getInstance("OZ.Tools.i18n");
+        return OZLogger.getInstance("OZ.Tools.SQLite");
     }
 
     /**
@@ -24,8 +63,7 @@ public class SQLite {
      * @param plugin
      */
     public SQLite(Plugin plugin) {
-        this.plugin = plugin;
-        initDatabase();
+        this(plugin, defaultProfile);
     }
 
     /**
@@ -34,56 +72,595 @@ public class SQLite {
      * @param logLevel
      */
     public SQLite(Plugin plugin, int logLevel) {
+        this(plugin, defaultProfile);
+    }
+
+    /**
+     *
+     * @param plugin
+     * @param profile PRAGMAs applied whenever the connection is opened
+     */
+    public SQLite(Plugin plugin, SQLiteProfile profile) {
         this.plugin = plugin;
-        initDatabase();
+        this.profile = profile != null ? profile : SQLiteProfile.defaults();
+    }
+
+    /**
+     * Sets the profile used by the constructors without an explicit profile,
+     * configured by the tools settings.properties
+     *
+     * @param profile
+     */
+    public static void setDefaultProfile(SQLiteProfile profile) {
+        defaultProfile = profile != null ? profile : SQLiteProfile.defaults();
+    }
+
+    public static SQLiteProfile getDefaultProfile() {
+        return defaultProfile;
     }
 
     private void initDatabase() {
-        if (db == null) {
-            String path = plugin.getPath() + "/" + World.getName() + ".db";
-            db = plugin.getSQLiteConnection(path);
+        if (db != null) {
+            return;
+        }
+        synchronized (this) {
+            if (db != null) {
+                return;
+            }
+            String path = getDatabasePath();
+            Database writer = openDatabase(path);
             logger().info("Connected to " + path);
+            try {
+                String journalMode = profile.apply(writer.getConnection());
+                wal = "WAL".equalsIgnoreCase(journalMode);
+                if (profile.requestsWal() && !wal) {
+                    logger().warn("⚠️ WAL mode is not available for " + path + ", using journal mode " + journalMode
+                            + " without read pool and background checkpoints");
+                }
+            } catch (Exception e) {
+                logger().fatal("Failed to apply profile [" + profile + "] (" + e.getClass().getTypeName() + "): "
+                        + e.getMessage());
+            }
+            if (wal && profile.getCheckpointInterval() > 0) {
+                checkpointer = new SQLiteCheckpointer(writer, writeLock, this::getPendingWrites, plugin.getName(),
+                        profile.getCheckpointInterval());
+            }
+            if (wal && profile.getReadPoolSize() > 0) {
+                try {
+                    readPool = new SQLiteReadPool(() -> openDatabase(path), profile.getReadPoolSize(), profile);
+                    logger().info("Opened " + profile.getReadPoolSize() + " read connections for " + path);
+                } catch (SQLException e) {
+                    // reads stay on the writer connection
+                    logger().error("Failed to open the read pool for " + path + " ("
+                            + e.getClass().getTypeName() + "): " + e.getMessage());
+                }
+            }
+            registerMetrics();
+            db = writer;
+            OPEN.add(this);
         }
     }
 
+    /**
+     *
+     * @param pluginName
+     * @return shared scheduler for the background work of a database, separate
+     *         from the plugin's own tasks (and from the tools' own tasks) so
+     *         cancelling those does not stop the writer before
+     *         {@link #destroy()} flushed it
+     */
+    static OZScheduler scheduler(String pluginName) {
+        return OZScheduler.getInstance("OZ.SQLite." + pluginName);
+    }
+
+    private String metricsPrefix() {
+        return "sqlite." + plugin.getName() + ".";
+    }
+
+    private void registerMetrics() {
+        String prefix = metricsPrefix();
+        Metrics.gauge(prefix + "writes.pending", this::getPendingWrites);
+        SQLiteReadPool pool = readPool;
+        if (pool != null) {
+            Metrics.gauge(prefix + "readpool.active", pool::getActiveCount);
+            Metrics.gauge(prefix + "readpool.idle", pool::getIdleCount);
+            Metrics.gauge(prefix + "readpool.waits", pool::getWaitCount);
+            Metrics.gauge(prefix + "readpool.maxWaitMillis", pool::getMaxWaitMillis);
+        }
+    }
+
+    /**
+     *
+     * @return path of the database file, {@code <plugin>/<World>.db}
+     */
+    protected String getDatabasePath() {
+        return plugin.getPath() + "/" + World.getName() + ".db";
+    }
+
+    /**
+     * Opens the connection, override to use a different driver (e.g. in
+     * benchmarks without a running server)
+     *
+     * @param path
+     * @return
+     */
+    protected Database openDatabase(String path) {
+        return plugin.getSQLiteConnection(path);
+    }
+
+    public Plugin getPlugin() {
+        return plugin;
+    }
+
+    public SQLiteProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     *
+     * @return true if SQLite switched the database to WAL mode, a profile can
+     *         ask for WAL without getting it (e.g. on network file systems)
+     */
+    public boolean isWal() {
+        initDatabase();
+        return wal;
+    }
+
+    /**
+     *
+     * @return pool of read-only connections, null if the profile is not in WAL
+     *         mode or has no read pool
+     */
+    public SQLiteReadPool getReadPool() {
+        initDatabase();
+        return readPool;
+    }
+
+    /**
+     *
+     * @return JDBC connection of the writer
+     */
+    Connection getConnection() {
+        initDatabase();
+        return db.getConnection();
+    }
+
+    /**
+     *
+     * @return lock that has to be held while using the writer connection in a
+     *         transaction
+     */
+    ReentrantLock getWriteLock() {
+        return writeLock;
+    }
+
     public Database getRawDatabase() {
+        initDatabase();
         return db;
     }
 
+    /**
+     * Runs a query and returns all rows as a disconnected result set, the
+     * statement is closed before this method returns. Read-only statements use
+     * the read pool if there is one, others run on the writer connection while
+     * holding the write lock, so they never see an open write-behind batch. Use
+     * {@link #forEachRow(String, RowConsumer, Object...)} or
+     * {@link #stream(String, RowMapper, Object...)} for large results.
+     *
+     * @param query
+     * @return null if the query failed (the exception is logged)
+     * @throws SQLException
+     */
     public ResultSet executeQuery(String query) throws SQLException {
         initDatabase();
-        try {
-            return db.executeQuery(query);
+        Database reader = acquireReader(query);
+        Database database = reader != null ? reader : db;
+        if (reader == null) {
+            writeLock.lock();
+        }
+        SQLiteStatementEvent event = new SQLiteStatementEvent("query");
+        event.begin();
+        long start = System.nanoTime();
+        try (Statement stmt = database.getConnection().createStatement();
+                ResultSet rs = stmt.executeQuery(query)) {
+            CachedRowSet rows = rowSetFactory().createCachedRowSet();
+            rows.populate(rs);
+            record(query, start, event, database.getConnection(), null);
+            return rows;
         } catch (Exception e) {
-            logger().fatal("Exception (" + e.getClass().getTypeName() + "): " + e.getMessage());
+            logException(query, e);
+        } finally {
+            if (reader == null) {
+                writeLock.unlock();
+            }
+            releaseReader(reader);
         }
         return null;
     }
 
+    private static synchronized RowSetFactory rowSetFactory() throws SQLException {
+        if (rowSetFactory == null) {
+            rowSetFactory = RowSetProvider.newFactory();
+        }
+        return rowSetFactory;
+    }
+
+    /**
+     * Runs a query and hands every row to the consumer, no rows are buffered.
+     * Statement and result set are closed before this method returns. Read-only
+     * statements use the read pool if there is one.
+     *
+     * <pre>
+     * db.forEachRow("SELECT x, z, owner FROM claims WHERE world = ?", row -&gt; {
+     *     index.add(row.getInt(1), row.getInt(2), row.getString(3));
+     * }, worldName);
+     * </pre>
+     *
+     * @param query    SQL with {@code ?} placeholders
+     * @param consumer
+     * @param params   values bound to the placeholders
+     * @return number of rows
+     * @throws SQLException
+     */
+    public int forEachRow(String query, RowConsumer consumer, Object... params) throws SQLException {
+        initDatabase();
+        Database reader = acquireReader(query);
+        Database database = reader != null ? reader : db;
+        SQLiteStatementEvent event = new SQLiteStatementEvent("query");
+        event.begin();
+        long start = System.nanoTime();
+        try (PreparedStatement stmt = prepare(database, query, params);
+                ResultSet rs = stmt.executeQuery()) {
+            Row row = new Row(rs);
+            int count = 0;
+            while (rs.next()) {
+                consumer.accept(row);
+                count++;
+            }
+            record(query, start, event, database.getConnection(), params);
+            return count;
+        } finally {
+            releaseReader(reader);
+        }
+    }
+
+    /**
+     *
+     * @param query  SQL with {@code ?} placeholders
+     * @param mapper
+     * @param params values bound to the placeholders
+     * @return the first row mapped, empty if there is none (or it was mapped to
+     *         null)
+     * @throws SQLException
+     */
+    public <T> Optional<T> queryFirst(String query, RowMapper<T> mapper, Object... params) throws SQLException {
+        initDatabase();
+        Database reader = acquireReader(query);
+        Database database = reader != null ? reader : db;
+        SQLiteStatementEvent event = new SQLiteStatementEvent("query");
+        event.begin();
+        long start = System.nanoTime();
+        try (PreparedStatement stmt = prepare(database, query, params)) {
+            stmt.setMaxRows(1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                Optional<T> first = rs.next() ? Optional.ofNullable(mapper.map(new Row(rs))) : Optional.empty();
+                record(query, start, event, database.getConnection(), params);
+                return first;
+            }
+        } finally {
+            releaseReader(reader);
+        }
+    }
+
+    /**
+     * Lazy stream over the rows of a query. Rows are read from the database
+     * while the stream is consumed. The statement is closed when the last row was
+     * read, use try-with-resources if the stream may not be consumed completely.
+     * SQL errors during iteration are thrown as {@link UncheckedSQLException}.
+     * Read-only statements hold a connection of the read pool until the stream
+     * is closed.
+     *
+     * @param query  SQL with {@code ?} placeholders
+     * @param mapper
+     * @param params values bound to the placeholders
+     * @return
+     * @throws SQLException if the query could not be executed
+     */
+    public <T> Stream<T> stream(String query, RowMapper<T> mapper, Object... params) throws SQLException {
+        initDatabase();
+        Database reader = acquireReader(query);
+        Database database = reader != null ? reader : db;
+        PreparedStatement stmt;
+        ResultSet rs;
+        try {
+            SQLiteStatementEvent event = new SQLiteStatementEvent("query");
+            event.begin();
+            long start = System.nanoTime();
+            stmt = prepare(database, query, params);
+            try {
+                rs = stmt.executeQuery();
+                // only the execution is timed, rows are read lazily by the caller
+                record(query, start, event, database.getConnection(), params);
+            } catch (SQLException e) {
+                stmt.close();
+                throw e;
+            }
+        } catch (SQLException | RuntimeException e) {
+            releaseReader(reader);
+            throw e;
+        }
+        Row row = new Row(rs);
+        AtomicBoolean closed = new AtomicBoolean(false);
+        Runnable close = () -> {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                stmt.close();
+            } catch (SQLException e) {
+                logger().error("Exception on close (" + e.getClass().getTypeName() + "): " + e.getMessage());
+            } finally {
+                releaseReader(reader);
+            }
+        };
+        Spliterator<T> rows = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED) {
+            private boolean done = false;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                if (done) {
+                    return false;
+                }
+                try {
+                    if (!rs.next()) {
+                        done = true;
+                        close.run();
+                        return false;
+                    }
+                    action.accept(mapper.map(row));
+                    return true;
+                } catch (SQLException e) {
+                    done = true;
+                    close.run();
+                    throw new UncheckedSQLException(e);
+                }
+            }
+        };
+        return StreamSupport.stream(rows, false).onClose(close);
+    }
+
+    /**
+     *
+     * @param query
+     * @return a read connection if the statement can be routed to the read pool,
+     *         null for the writer connection
+     * @throws SQLException
+     */
+    private Database acquireReader(String query) throws SQLException {
+        SQLiteReadPool pool = readPool;
+        if (pool == null || !SQLiteReadPool.isReadOnly(query)) {
+            return null;
+        }
+        try {
+            return pool.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a read connection", e);
+        } catch (IllegalStateException e) {
+            // pool closed by destroy(), use the writer
+            return null;
+        }
+    }
+
+    private void releaseReader(Database reader) {
+        if (reader == null) {
+            return;
+        }
+        SQLiteReadPool pool = readPool;
+        if (pool != null && pool.owns(reader)) {
+            pool.release(reader);
+        } else {
+            // the pool was closed by destroy() while the reader was in use
+            reader.close();
+        }
+    }
+
+    private void record(String query, long start, SQLiteStatementEvent event, Connection conn, Object[] params) {
+        SQLiteQueryStats.record(plugin.getName(), query, System.nanoTime() - start, conn, params);
+        event.finish(plugin.getName(), query);
+    }
+
+    private void logException(String query, Exception e) {
+        logger().fatal("[" + plugin.getName() + "] Exception (" + e.getClass().getTypeName() + "): " + e.getMessage()
+                + " | " + SQLiteQueryStats.shape(query));
+    }
+
+    private PreparedStatement prepare(Database database, String query, Object[] params) throws SQLException {
+        PreparedStatement stmt = database.getConnection().prepareStatement(query);
+        try {
+            for (int i = 0; i < params.length; i++) {
+                stmt.setObject(i + 1, params[i]);
+            }
+        } catch (SQLException e) {
+            stmt.close();
+            throw e;
+        }
+        return stmt;
+    }
+
     public void executeUpdate(String query) {
         initDatabase();
+        writeLock.lock();
         try {
+            SQLiteStatementEvent event = new SQLiteStatementEvent("update");
+            event.begin();
+            long start = System.nanoTime();
             db.executeUpdate(query);
+            record(query, start, event, db.getConnection(), null);
         } catch (Exception e) {
-            logger().fatal("Exception (" + e.getClass().getTypeName() + "): " + e.getMessage());
+            logException(query, e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Enqueues an update for the write-behind queue. Updates are committed by a
+     * single DB thread in one transaction per batch, see
+     * {@link #setWriteBatching(int, long, TimeUnit)}.
+     *
+     * @param query
+     * @return future with the number of affected rows, completed on the DB
+     *         writer thread
+     */
+    public CompletableFuture<Integer> executeUpdateAsync(String query) {
+        initDatabase();
+        return getWriteQueue().enqueue(query);
+    }
+
+    /**
+     * Enqueues an update with bind parameters for the write-behind queue, it
+     * runs as a prepared statement on the DB writer thread
+     *
+     * <pre>
+     * db.executeUpdateAsync("UPDATE stats SET kills = kills + 1 WHERE uid = ?", player.getUID());
+     * </pre>
+     *
+     * @param query  SQL with {@code ?} placeholders
+     * @param params values bound to the placeholders
+     * @return future with the number of affected rows, completed on the DB
+     *         writer thread
+     */
+    public CompletableFuture<Integer> executeUpdateAsync(String query, Object... params) {
+        initDatabase();
+        return getWriteQueue().enqueue(query, params);
+    }
+
+    /**
+     * Configures the batching of {@link #executeUpdateAsync(String)}. Has to be
+     * called before the first async update.
+     *
+     * @param maxBatchSize max statements per transaction
+     * @param maxDelay     max time a batch waits for more statements
+     * @param unit
+     */
+    public void setWriteBatching(int maxBatchSize, long maxDelay, TimeUnit unit) {
+        if (writeQueue != null) {
+            logger().warn("⚠️ Write batching changed after the write queue was started, ignoring");
+            return;
+        }
+        this.writeBatchSize = maxBatchSize;
+        this.writeBatchDelayMs = unit.toMillis(maxDelay);
+    }
+
+    private synchronized int getPendingWrites() {
+        return writeQueue != null ? writeQueue.getPendingCount() : 0;
+    }
+
+    private synchronized SQLiteWriteQueue getWriteQueue() {
+        if (writeQueue == null) {
+            writeQueue = new SQLiteWriteQueue(db, writeLock, plugin.getName(), writeBatchSize, writeBatchDelayMs,
+                    TimeUnit.MILLISECONDS);
         }
+        return writeQueue;
+    }
+
+    /**
+     * Cached key/value store with periodic write-back, see
+     * {@link SQLiteKeyValueStore}. The store is flushed by {@link #destroy()}.
+     *
+     * @param namespace
+     * @return the store of the namespace, created on first use
+     */
+    public SQLiteKeyValueStore getKeyValueStore(String namespace) {
+        return getKeyValueStore(namespace, SQLiteKeyValueStore.DEFAULT_MAX_ENTRIES,
+                SQLiteKeyValueStore.DEFAULT_FLUSH_INTERVAL_SECONDS);
+    }
+
+    /**
+     *
+     * @param namespace
+     * @param maxEntries           max cached keys, only used on creation
+     * @param flushIntervalSeconds interval of the write-back, only used on
+     *                             creation
+     * @return the store of the namespace, created on first use
+     */
+    public SQLiteKeyValueStore getKeyValueStore(String namespace, int maxEntries, long flushIntervalSeconds) {
+        initDatabase();
+        return keyValueStores.computeIfAbsent(namespace,
+                ns -> new SQLiteKeyValueStore(this, ns, maxEntries, flushIntervalSeconds));
     }
 
     public void execute(String query) {
         initDatabase();
+        writeLock.lock();
         try {
+            SQLiteStatementEvent event = new SQLiteStatementEvent("execute");
+            event.begin();
+            long start = System.nanoTime();
             db.execute(query);
+            record(query, start, event, db.getConnection(), null);
         } catch (Exception e) {
-            logger().fatal("Exception (" + e.getClass().getTypeName() + "): " + e.getMessage());
+            logException(query, e);
+        } finally {
+            writeLock.unlock();
         }
     }
 
-    public void destroy() {
+    /**
+     * Flushes key/value stores and the write-behind queue and closes the
+     * connection. Does nothing if the connection is not open (never used or
+     * already destroyed).
+     */
+    public synchronized void destroy() {
+        if (db == null) {
+            return;
+        }
+        OPEN.remove(this);
+        Metrics.removeAll(metricsPrefix());
+        for (SQLiteKeyValueStore store : keyValueStores.values()) {
+            store.close();
+            logger().info("Key/value store " + store);
+        }
+        keyValueStores.clear();
+        if (readPool != null) {
+            logger().info("Read pool stats: " + readPool);
+            readPool.close();
+            readPool = null;
+        }
+        if (checkpointer != null) {
+            checkpointer.shutdown();
+            checkpointer = null;
+        }
+        if (writeQueue != null) {
+            writeQueue.close(10, TimeUnit.SECONDS);
+            writeQueue = null;
+        }
         try {
             db.close();
             db = null;
         } catch (Exception e) {
             logger().fatal("Exception (" + e.getClass().getTypeName() + "): " + e.getMessage());
         }
+        // everything is flushed, nothing of this database is scheduled anymore
+        scheduler(plugin.getName()).shutdown();
+    }
+
+    /**
+     * Destroys all open databases, called when the tools plugin is disabled
+     * before the scheduler is shut down, so dirty key/value entries and queued
+     * writes of plugins that did not call {@link #destroy()} yet are flushed
+     * while the writers still run
+     *
+     * @return number of destroyed databases
+     */
+    public static int destroyAll() {
+        int destroyed = 0;
+        for (SQLite sqlite : OPEN) {
+            logger().info("Flushing and closing the database of " + sqlite.plugin.getName());
+            sqlite.destroy();
+            destroyed++;
+        }
+        return destroyed;
     }
 }
@@ -0,0 +1,58 @@
+package de.omegazirkel.risingworld.tools.db;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.function.IntSupplier;
+
+import de.omegazirkel.risingworld.tools.OZLogger;
+import net.risingworld.api.database.Database;
+
+/**
+ * Background WAL checkpoints for a {@link SQLite} connection in WAL mode.
+ *
+ * Runs {@code PRAGMA wal_checkpoint(PASSIVE)} in a fixed interval so the
+ * checkpoint work is not done by a commit on the server thread. A run is
+ * skipped while the write lock is held or write-behind statements are
+ * pending, so checkpoints never compete with write bursts.
+ */
+class SQLiteCheckpointer {
+    private final Database db;
+    private final Lock writeLock;
+    private final IntSupplier pendingWrites;
+    private final ScheduledFuture<?> task;
+
+    private static OZLogger logger() {
+        return SQLite.logger();
+    }
+
+    SQLiteCheckpointer(Database db, Lock writeLock, IntSupplier pendingWrites, String name, long intervalSeconds) {
+        this.db = db;
+        this.writeLock = writeLock;
+        this.pendingWrites = pendingWrites;
+        this.task = SQLite.scheduler(name).scheduleWithFixedDelay(this::checkpoint, intervalSeconds,
+                intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void checkpoint() {
+        if (pendingWrites.getAsInt() > 0 || !writeLock.tryLock()) {
+            return;
+        }
+        try (Statement stmt = db.getConnection().createStatement();
+                ResultSet rs = stmt.executeQuery("PRAGMA wal_checkpoint(PASSIVE)")) {
+            if (rs.next() && rs.getInt(1) != 0) {
+                logger().debug("WAL checkpoint was blocked, retrying next interval");
+            }
+        } catch (Exception e) {
+            logger().error("WAL checkpoint failed (" + e.getClass().getTypeName() + "): " + e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    void shutdown() {
+        task.cancel(false);
+    }
+}
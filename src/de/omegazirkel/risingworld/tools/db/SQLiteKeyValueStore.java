@@ -0,0 +1,371 @@
+package de.omegazirkel.risingworld.tools.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+import de.omegazirkel.risingworld.tools.OZLogger;
+
+/**
+ * Typed key/value store in the plugin database with an in-memory cache in
+ * front of it, e.g. for player settings and flags.
+ *
+ * Reads are served from a size-bounded LRU cache (misses are cached too).
+ * Writes only mark the key dirty; dirty keys are written back periodically in
+ * one transaction and on {@link #flush()}/{@link #close()}. Dirty keys and
+ * keys of a running write-back are read from memory until the write-back
+ * committed, even if the cache evicted them. Get an instance with
+ * {@link SQLite#getKeyValueStore(String)}, {@link SQLite#destroy()} flushes
+ * it (or {@link SQLite#destroyAll()} when the tools plugin is disabled).
+ *
+ * <pre>
+ * SQLiteKeyValueStore settings = db.getKeyValueStore("player-settings");
+ * boolean showWelcome = settings.getBoolean(player.getUID() + ".welcome", true);
+ * settings.put(player.getUID() + ".welcome", false);
+ * </pre>
+ */
+public class SQLiteKeyValueStore implements AutoCloseable {
+    public static final String TABLE = "oz_kv";
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+    public static final long DEFAULT_FLUSH_INTERVAL_SECONDS = 30;
+
+    // cached marker for keys that do not exist in the database
+    private static final String MISSING = new String("<missing>");
+
+    private final SQLite sqlite;
+    private final String namespace;
+    private final Map<String, String> cache;
+    // key -> new value, null means delete
+    private Map<String, String> dirty = new HashMap<>();
+    // keys of the running write-back, readable until it committed
+    private Map<String, String> writing = Collections.emptyMap();
+    // committed write-backs, a load that overlapped one is not cached
+    private long writeBacks = 0;
+    private final Object lock = new Object();
+    // keeps write-backs in order
+    private final Object flushLock = new Object();
+    private final ScheduledFuture<?> flusher;
+    private volatile boolean closed = false;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong writtenBack = new AtomicLong();
+
+    private static OZLogger logger() {
+        return SQLite.logger();
+    }
+
+    /**
+     *
+     * @param sqlite
+     * @param namespace            separates stores in the same database
+     * @param maxEntries           max cached keys
+     * @param flushIntervalSeconds interval of the write-back
+     */
+    SQLiteKeyValueStore(SQLite sqlite, String namespace, int maxEntries, long flushIntervalSeconds) {
+        this.sqlite = sqlite;
+        this.namespace = namespace;
+        this.cache = new LinkedHashMap<>(Math.min(maxEntries, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxEntries;
+            }
+        };
+
+        sqlite.execute("CREATE TABLE IF NOT EXISTS " + TABLE + " (namespace TEXT NOT NULL, key TEXT NOT NULL, "
+                + "value TEXT NOT NULL, PRIMARY KEY (namespace, key)) WITHOUT ROWID");
+
+        this.flusher = SQLite.scheduler(sqlite.getPlugin().getName()).scheduleWithFixedDelay(this::flush,
+                flushIntervalSeconds, flushIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    /**
+     *
+     * @param key
+     * @return the value or null if the key does not exist
+     */
+    public String getString(String key) {
+        while (true) {
+            long generation;
+            synchronized (lock) {
+                if (dirty.containsKey(key)) {
+                    hits.incrementAndGet();
+                    return dirty.get(key);
+                }
+                if (writing.containsKey(key)) {
+                    hits.incrementAndGet();
+                    return writing.get(key);
+                }
+                String cached = cache.get(key);
+                if (cached != null) {
+                    hits.incrementAndGet();
+                    return cached == MISSING ? null : cached;
+                }
+                generation = writeBacks;
+            }
+            misses.incrementAndGet();
+            String loaded = load(key);
+            synchronized (lock) {
+                // a put() while loading wins over the loaded value
+                if (dirty.containsKey(key)) {
+                    return dirty.get(key);
+                }
+                if (writing.containsKey(key)) {
+                    return writing.get(key);
+                }
+                if (generation != writeBacks) {
+                    // a write-back committed while loading, the loaded value may be older
+                    continue;
+                }
+                cache.putIfAbsent(key, loaded != null ? loaded : MISSING);
+            }
+            return loaded;
+        }
+    }
+
+    public String getString(String key, String defaultValue) {
+        String value = getString(key);
+        return value != null ? value : defaultValue;
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = getString(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = getString(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        String value = getString(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key);
+        return value != null ? Boolean.parseBoolean(value) : defaultValue;
+    }
+
+    public boolean contains(String key) {
+        return getString(key) != null;
+    }
+
+    /**
+     * Stores the value in the cache, it is written to the database with the
+     * next write-back
+     *
+     * @param key
+     * @param value null removes the key
+     */
+    public void put(String key, String value) {
+        if (closed) {
+            throw new IllegalStateException("Key/value store " + namespace + " is closed");
+        }
+        synchronized (lock) {
+            dirty.put(key, value);
+            cache.put(key, value != null ? value : MISSING);
+        }
+    }
+
+    public void put(String key, int value) {
+        put(key, Integer.toString(value));
+    }
+
+    public void put(String key, long value) {
+        put(key, Long.toString(value));
+    }
+
+    public void put(String key, double value) {
+        put(key, Double.toString(value));
+    }
+
+    public void put(String key, boolean value) {
+        put(key, Boolean.toString(value));
+    }
+
+    public void remove(String key) {
+        put(key, null);
+    }
+
+    private String load(String key) {
+        try {
+            Optional<String> value = sqlite.queryFirst(
+                    "SELECT value FROM " + TABLE + " WHERE namespace = ? AND key = ?", row -> row.getString(1),
+                    namespace, key);
+            return value.orElse(null);
+        } catch (SQLException e) {
+            logger().error("[" + namespace + "] Failed to load " + key + " (" + e.getClass().getTypeName() + "): "
+                    + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes all dirty keys in one transaction
+     *
+     * @return true if there was nothing to write or the write succeeded
+     */
+    public boolean flush() {
+        synchronized (flushLock) {
+            Map<String, String> pending;
+            synchronized (lock) {
+                if (dirty.isEmpty()) {
+                    return true;
+                }
+                pending = dirty;
+                writing = pending;
+                dirty = new HashMap<>();
+            }
+
+            try {
+                write(pending);
+                synchronized (lock) {
+                    writing = Collections.emptyMap();
+                    writeBacks++;
+                }
+                writtenBack.addAndGet(pending.size());
+                return true;
+            } catch (Exception e) {
+                logger().error("[" + namespace + "] Write-back of " + pending.size() + " keys failed ("
+                        + e.getClass().getTypeName() + "): " + e.getMessage());
+                synchronized (lock) {
+                    // keep newer values written in the meantime
+                    Map<String, String> retry = new HashMap<>(pending);
+                    retry.putAll(dirty);
+                    dirty = retry;
+                    writing = Collections.emptyMap();
+                }
+                return false;
+            }
+        }
+    }
+
+    private void write(Map<String, String> pending) throws SQLException {
+        Lock writeLock = sqlite.getWriteLock();
+        writeLock.lock();
+        try {
+            Connection conn = sqlite.getConnection();
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            SQLiteStatementEvent event = new SQLiteStatementEvent("kv-flush");
+            event.begin();
+            long start = System.nanoTime();
+            try (PreparedStatement upsert = conn.prepareStatement(
+                    "INSERT OR REPLACE INTO " + TABLE + " (namespace, key, value) VALUES (?, ?, ?)");
+                    PreparedStatement delete = conn.prepareStatement(
+                            "DELETE FROM " + TABLE + " WHERE namespace = ? AND key = ?")) {
+                for (Map.Entry<String, String> entry : pending.entrySet()) {
+                    if (entry.getValue() != null) {
+                        upsert.setString(1, namespace);
+                        upsert.setString(2, entry.getKey());
+                        upsert.setString(3, entry.getValue());
+                        upsert.addBatch();
+                    } else {
+                        delete.setString(1, namespace);
+                        delete.setString(2, entry.getKey());
+                        delete.addBatch();
+                    }
+                }
+                upsert.executeBatch();
+                delete.executeBatch();
+                conn.commit();
+                SQLiteQueryStats.record(sqlite.getPlugin().getName(), "KV write-back " + namespace,
+                        System.nanoTime() - start, null, null);
+                event.finish(sqlite.getPlugin().getName(), "KV write-back " + namespace);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Drops all cached values that are not dirty, e.g. after the database was
+     * changed by plain SQL
+     */
+    public void invalidate() {
+        synchronized (lock) {
+            cache.clear();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getWrittenBackCount() {
+        return writtenBack.get();
+    }
+
+    public int getDirtyCount() {
+        synchronized (lock) {
+            return dirty.size();
+        }
+    }
+
+    /**
+     * Stops the periodic write-back and flushes all dirty keys
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // a write-back running right now is waited for by flush()
+        flusher.cancel(false);
+        if (!flush()) {
+            logger().fatal("❌ [" + namespace + "] " + getDirtyCount() + " keys could not be written on close");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return namespace + ": hits=" + getHitCount() + ", misses=" + getMissCount() + ", dirty=" + getDirtyCount()
+                + ", writtenBack=" + getWrittenBackCount();
+    }
+}
@@ -0,0 +1,178 @@
+package de.omegazirkel.risingworld.tools.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+
+import de.omegazirkel.risingworld.tools.OZLogger;
+
+/**
+ * Versioned schema migrations for a {@link SQLite} database.
+ *
+ * Applied versions are stored in the {@code oz_schema_version} table. On
+ * startup {@link #migrate()} only reads the highest applied version, if the
+ * schema is current nothing else is executed. Pending migrations are applied
+ * in ascending order in one transaction, a failing migration rolls back all of
+ * them.
+ *
+ * <pre>
+ * boolean ok = new SQLiteMigrations(db)
+ *         .add(1, "stats table", "CREATE TABLE stats (uid TEXT PRIMARY KEY, kills INTEGER NOT NULL DEFAULT 0)")
+ *         .add(2, "deaths", "ALTER TABLE stats ADD COLUMN deaths INTEGER NOT NULL DEFAULT 0")
+ *         .migrate();
+ * </pre>
+ */
+public class SQLiteMigrations {
+    public static final String TABLE = "oz_schema_version";
+
+    private final SQLite sqlite;
+    private final NavigableMap<Integer, Migration> migrations = new TreeMap<>();
+
+    private static OZLogger logger() {
+        return SQLite.logger();
+    }
+
+    /**
+     * A migration step written in Java, e.g. to convert data
+     */
+    @FunctionalInterface
+    public interface MigrationStep {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    private record Migration(int version, String description, MigrationStep step) {
+    }
+
+    public SQLiteMigrations(SQLite sqlite) {
+        this.sqlite = sqlite;
+    }
+
+    /**
+     *
+     * @param version     unique version greater than 0
+     * @param description
+     * @param statements  executed in the given order
+     * @return
+     */
+    public SQLiteMigrations add(int version, String description, String... statements) {
+        return add(version, description, conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                for (String sql : statements) {
+                    stmt.execute(sql);
+                }
+            }
+        });
+    }
+
+    /**
+     *
+     * @param version     unique version greater than 0
+     * @param description
+     * @param step
+     * @return
+     */
+    public SQLiteMigrations add(int version, String description, MigrationStep step) {
+        if (version <= 0) {
+            throw new IllegalArgumentException("Migration version has to be greater than 0: " + version);
+        }
+        if (migrations.putIfAbsent(version, new Migration(version, description, step)) != null) {
+            throw new IllegalArgumentException("Duplicate migration version: " + version);
+        }
+        return this;
+    }
+
+    /**
+     *
+     * @return highest applied version, 0 if no migration was applied yet
+     * @throws SQLException
+     */
+    public int getCurrentVersion() throws SQLException {
+        Connection conn = sqlite.getConnection();
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM " + TABLE)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            if (e.getMessage() != null && e.getMessage().contains("no such table")) {
+                return 0;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Applies all pending migrations in one transaction
+     *
+     * @return true if the schema is current afterwards
+     */
+    public boolean migrate() {
+        long start = System.nanoTime();
+        Lock writeLock = sqlite.getWriteLock();
+        writeLock.lock();
+        try {
+            int current = getCurrentVersion();
+            Map<Integer, Migration> pending = migrations.tailMap(current, false);
+            if (pending.isEmpty()) {
+                logger().debug("Schema is current at version " + current + " (" + millisSince(start) + "ms)");
+                return true;
+            }
+            return apply(current, pending, start);
+        } catch (SQLException e) {
+            logger().fatal("Schema migration failed (" + e.getClass().getTypeName() + "): " + e.getMessage());
+            return false;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private boolean apply(int current, Map<Integer, Migration> pending, long start) throws SQLException {
+        Connection conn = sqlite.getConnection();
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        Migration running = null;
+        try {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE IF NOT EXISTS " + TABLE + " (version INTEGER PRIMARY KEY, "
+                        + "description TEXT NOT NULL, applied_at INTEGER NOT NULL, duration_ms INTEGER NOT NULL)");
+            }
+            try (PreparedStatement insert = conn.prepareStatement("INSERT INTO " + TABLE
+                    + " (version, description, applied_at, duration_ms) VALUES (?, ?, ?, ?)")) {
+                for (Migration migration : pending.values()) {
+                    running = migration;
+                    long migrationStart = System.nanoTime();
+                    migration.step().apply(conn);
+                    long duration = millisSince(migrationStart);
+
+                    insert.setInt(1, migration.version());
+                    insert.setString(2, migration.description());
+                    insert.setLong(3, System.currentTimeMillis());
+                    insert.setLong(4, duration);
+                    insert.executeUpdate();
+                    logger().info("Migration " + migration.version() + " (" + migration.description() + ") applied in "
+                            + duration + "ms");
+                }
+            }
+            conn.commit();
+            logger().info("✅ Schema migrated from version " + current + " to " + running.version() + " in "
+                    + millisSince(start) + "ms");
+            return true;
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            String failed = running != null ? running.version() + " (" + running.description() + ")" : "table";
+            logger().fatal("❌ Migration " + failed + " failed, schema stays at version " + current + " ("
+                    + e.getClass().getTypeName() + "): " + e.getMessage());
+            return false;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static long millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,283 @@
+package de.omegazirkel.risingworld.tools.db;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+/**
+ * Connection profile for {@link SQLite}, applied as PRAGMAs whenever the
+ * connection is opened. Values that are not set keep the SQLite defaults.
+ *
+ * Use {@link #tuned()} for WAL mode with relaxed fsync, or
+ * {@link #fromProperties(Properties)} to read the profile from a
+ * settings.properties file. Profiles are immutable, the {@code with*} methods
+ * return a changed copy, so a profile can be shared between plugins.
+ */
+public final class SQLiteProfile {
+    private static final SQLiteProfile DEFAULTS = new SQLiteProfile(null, null, null, null, null, null, 0, 0);
+
+    private final String journalMode;
+    private final String synchronous;
+    private final Integer cacheSize;
+    private final Long mmapSize;
+    private final String tempStore;
+    private final Integer walAutoCheckpoint;
+    private final long checkpointIntervalSeconds;
+    private final int readPoolSize;
+
+    private SQLiteProfile(String journalMode, String synchronous, Integer cacheSize, Long mmapSize, String tempStore,
+            Integer walAutoCheckpoint, long checkpointIntervalSeconds, int readPoolSize) {
+        this.journalMode = journalMode;
+        this.synchronous = synchronous;
+        this.cacheSize = cacheSize;
+        this.mmapSize = mmapSize;
+        this.tempStore = tempStore;
+        this.walAutoCheckpoint = walAutoCheckpoint;
+        this.checkpointIntervalSeconds = checkpointIntervalSeconds;
+        this.readPoolSize = readPoolSize;
+    }
+
+    /**
+     *
+     * @return a profile that keeps all SQLite defaults (rollback journal, full
+     *         fsync on every commit)
+     */
+    public static SQLiteProfile defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * WAL mode with synchronous=NORMAL, 16 MB page cache, 64 MB mmap and temp
+     * tables in memory. WAL checkpoints are done in the background every 30
+     * seconds, reads are spread over 2 read-only connections.
+     *
+     * @return
+     */
+    public static SQLiteProfile tuned() {
+        return DEFAULTS
+                .withJournalMode("WAL")
+                .withSynchronous("NORMAL")
+                .withCacheSize(-16000)
+                .withMmapSize(64L * 1024 * 1024)
+                .withTempStore("MEMORY")
+                .withWalAutoCheckpoint(4000)
+                .withCheckpointInterval(30)
+                .withReadPoolSize(2);
+    }
+
+    /**
+     * Reads a profile from properties, all keys are optional:
+     *
+     * <pre>
+     * sqlite.profile=tuned              # base profile: default or tuned
+     * sqlite.journalMode=WAL
+     * sqlite.synchronous=NORMAL
+     * sqlite.cacheSize=-16000
+     * sqlite.mmapSize=67108864
+     * sqlite.tempStore=MEMORY
+     * sqlite.walAutoCheckpoint=4000
+     * sqlite.checkpointInterval=30      # seconds, 0 = no background checkpoints
+     * sqlite.readPoolSize=2             # read-only connections, 0 = no pool
+     * </pre>
+     *
+     * @param settings
+     * @return
+     * @throws NumberFormatException
+     */
+    public static SQLiteProfile fromProperties(Properties settings) {
+        SQLiteProfile profile = settings.getProperty("sqlite.profile", "default").trim().equalsIgnoreCase("tuned")
+                ? tuned()
+                : defaults();
+
+        String value;
+        if ((value = settings.getProperty("sqlite.journalMode")) != null)
+            profile = profile.withJournalMode(value.trim());
+        if ((value = settings.getProperty("sqlite.synchronous")) != null)
+            profile = profile.withSynchronous(value.trim());
+        if ((value = settings.getProperty("sqlite.cacheSize")) != null)
+            profile = profile.withCacheSize(Integer.parseInt(value.trim()));
+        if ((value = settings.getProperty("sqlite.mmapSize")) != null)
+            profile = profile.withMmapSize(Long.parseLong(value.trim()));
+        if ((value = settings.getProperty("sqlite.tempStore")) != null)
+            profile = profile.withTempStore(value.trim());
+        if ((value = settings.getProperty("sqlite.walAutoCheckpoint")) != null)
+            profile = profile.withWalAutoCheckpoint(Integer.parseInt(value.trim()));
+        if ((value = settings.getProperty("sqlite.checkpointInterval")) != null)
+            profile = profile.withCheckpointInterval(Long.parseLong(value.trim()));
+        if ((value = settings.getProperty("sqlite.readPoolSize")) != null)
+            profile = profile.withReadPoolSize(Integer.parseInt(value.trim()));
+        return profile;
+    }
+
+    /**
+     * Applies all configured PRAGMAs to the given connection
+     *
+     * @param conn
+     * @return journal mode the connection is in afterwards, SQLite keeps the
+     *         old mode if a mode can not be used (e.g. WAL on a network file
+     *         system or for an in-memory database)
+     * @throws SQLException
+     */
+    String apply(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            if (journalMode != null)
+                stmt.execute("PRAGMA journal_mode=" + journalMode);
+            if (synchronous != null)
+                stmt.execute("PRAGMA synchronous=" + synchronous);
+            if (cacheSize != null)
+                stmt.execute("PRAGMA cache_size=" + cacheSize);
+            if (mmapSize != null)
+                stmt.execute("PRAGMA mmap_size=" + mmapSize);
+            if (tempStore != null)
+                stmt.execute("PRAGMA temp_store=" + tempStore);
+            if (walAutoCheckpoint != null)
+                stmt.execute("PRAGMA wal_autocheckpoint=" + walAutoCheckpoint);
+            try (ResultSet rs = stmt.executeQuery("PRAGMA journal_mode")) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    /**
+     *
+     * @return true if the profile asks for WAL mode, whether the database is
+     *         in WAL mode is only known after it was opened, see
+     *         {@link SQLite#isWal()}
+     */
+    public boolean requestsWal() {
+        return "WAL".equalsIgnoreCase(journalMode);
+    }
+
+    public String getJournalMode() {
+        return journalMode;
+    }
+
+    /**
+     *
+     * @param journalMode DELETE, TRUNCATE, PERSIST, MEMORY, WAL or OFF
+     * @return a copy with the changed value
+     */
+    public SQLiteProfile withJournalMode(String journalMode) {
+        return new SQLiteProfile(requireIdentifier(journalMode), synchronous, cacheSize, mmapSize, tempStore,
+                walAutoCheckpoint, checkpointIntervalSeconds, readPoolSize);
+    }
+
+    public String getSynchronous() {
+        return synchronous;
+    }
+
+    /**
+     *
+     * @param synchronous OFF, NORMAL, FULL or EXTRA
+     * @return a copy with the changed value
+     */
+    public SQLiteProfile withSynchronous(String synchronous) {
+        return new SQLiteProfile(journalMode, requireIdentifier(synchronous), cacheSize, mmapSize, tempStore,
+                walAutoCheckpoint, checkpointIntervalSeconds, readPoolSize);
+    }
+
+    public Integer getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     *
+     * @param cacheSize pages if positive, KiB if negative
+     * @return a copy with the changed value
+     */
+    public SQLiteProfile withCacheSize(int cacheSize) {
+        return new SQLiteProfile(journalMode, synchronous, cacheSize, mmapSize, tempStore, walAutoCheckpoint,
+                checkpointIntervalSeconds, readPoolSize);
+    }
+
+    public Long getMmapSize() {
+        return mmapSize;
+    }
+
+    /**
+     *
+     * @param mmapSize bytes, 0 disables memory mapped I/O
+     * @return a copy with the changed value
+     */
+    public SQLiteProfile withMmapSize(long mmapSize) {
+        return new SQLiteProfile(journalMode, synchronous, cacheSize, mmapSize, tempStore, walAutoCheckpoint,
+                checkpointIntervalSeconds, readPoolSize);
+    }
+
+    public String getTempStore() {
+        return tempStore;
+    }
+
+    /**
+     *
+     * @param tempStore DEFAULT, FILE or MEMORY
+     * @return a copy with the changed value
+     */
+    public SQLiteProfile withTempStore(String tempStore) {
+        return new SQLiteProfile(journalMode, synchronous, cacheSize, mmapSize, requireIdentifier(tempStore),
+                walAutoCheckpoint, checkpointIntervalSeconds, readPoolSize);
+    }
+
+    public Integer getWalAutoCheckpoint() {
+        return walAutoCheckpoint;
+    }
+
+    /**
+     *
+     * @param pages WAL size in pages that triggers a checkpoint on commit, 0
+     *              disables automatic checkpoints
+     * @return a copy with the changed value
+     */
+    public SQLiteProfile withWalAutoCheckpoint(int pages) {
+        return new SQLiteProfile(journalMode, synchronous, cacheSize, mmapSize, tempStore, pages,
+                checkpointIntervalSeconds, readPoolSize);
+    }
+
+    public long getCheckpointInterval() {
+        return checkpointIntervalSeconds;
+    }
+
+    /**
+     *
+     * @param seconds interval of the background WAL checkpoint, 0 disables it.
+     *                Only used in WAL mode.
+     * @return a copy with the changed value
+     */
+    public SQLiteProfile withCheckpointInterval(long seconds) {
+        return new SQLiteProfile(journalMode, synchronous, cacheSize, mmapSize, tempStore, walAutoCheckpoint,
+                Math.max(0, seconds), readPoolSize);
+    }
+
+    public int getReadPoolSize() {
+        return readPoolSize;
+    }
+
+    /**
+     *
+     * @param size number of read-only connections used for queries next to the
+     *             writer connection, 0 disables the pool. Only used in WAL mode.
+     * @return a copy with the changed value
+     */
+    public SQLiteProfile withReadPoolSize(int size) {
+        return new SQLiteProfile(journalMode, synchronous, cacheSize, mmapSize, tempStore, walAutoCheckpoint,
+                checkpointIntervalSeconds, Math.max(0, size));
+    }
+
+    // PRAGMA values can not be bound as parameters
+    private static String requireIdentifier(String value) {
+        if (value == null || !value.matches("[A-Za-z]+")) {
+            throw new IllegalArgumentException("Invalid PRAGMA value: " + value);
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "journal_mode=" + journalMode + ", synchronous=" + synchronous + ", cache_size=" + cacheSize
+                + ", mmap_size=" + mmapSize + ", temp_store=" + tempStore + ", wal_autocheckpoint="
+                + walAutoCheckpoint + ", checkpointInterval=" + checkpointIntervalSeconds + "s, readPoolSize="
+                + readPoolSize;
+    }
+}
@@ -0,0 +1,282 @@
+package de.omegazirkel.risingworld.tools.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import de.omegazirkel.risingworld.tools.OZLogger;
+import de.omegazirkel.risingworld.tools.metrics.Counter;
+import de.omegazirkel.risingworld.tools.metrics.Histogram;
+import de.omegazirkel.risingworld.tools.metrics.Metrics;
+
+/**
+ * Timing aggregates for all statements that go through {@link SQLite}, per
+ * plugin and statement shape. The shape is the statement with all literals
+ * replaced by {@code ?}, so {@code WHERE uid = '123'} and
+ * {@code WHERE uid = '456'} are counted together.
+ *
+ * Statements slower than the threshold are written to the
+ * {@code OZ.Tools.SQLite.SlowQuery} log, the first slow occurrence of a shape
+ * also gets its {@code EXPLAIN QUERY PLAN}.
+ */
+public class SQLiteQueryStats {
+    /** shapes tracked per plugin, everything above is counted as "(other)" */
+    public static final int MAX_SHAPES_PER_PLUGIN = 500;
+    private static final int MAX_SHAPE_LENGTH = 300;
+    private static final String OTHER = "(other)";
+
+    private static final Map<String, Map<String, StatementStats>> PLUGINS = new ConcurrentHashMap<>();
+    // all statements of all plugins
+    private static final Histogram STATEMENTS = Metrics.histogram("sqlite.statements.micros");
+    private static final Counter SLOW = Metrics.counter("sqlite.statements.slow");
+    private static volatile long slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(100);
+
+    static OZLogger slowLog() {
+        return OZLogger.getInstance("OZ.Tools.SQLite.SlowQuery");
+    }
+
+    /**
+     * Aggregates of one statement shape
+     */
+    public static final class StatementStats {
+        private final String plugin;
+        private final String shape;
+        private final Histogram micros = new Histogram();
+        private final AtomicBoolean planCaptured = new AtomicBoolean(false);
+
+        private StatementStats(String plugin, String shape) {
+            this.plugin = plugin;
+            this.shape = shape;
+        }
+
+        public String getPlugin() {
+            return plugin;
+        }
+
+        public String getShape() {
+            return shape;
+        }
+
+        public long getCount() {
+            return micros.getCount();
+        }
+
+        public long getTotalMicros() {
+            return micros.getSum();
+        }
+
+        public long getMeanMicros() {
+            return micros.getMean();
+        }
+
+        public long getMaxMicros() {
+            return micros.getMax();
+        }
+
+        public long getP99Micros() {
+            return micros.percentile(99);
+        }
+
+        @Override
+        public String toString() {
+            return "[" + plugin + "] count=" + getCount() + " total=" + getTotalMicros() / 1000 + "ms mean="
+                    + getMeanMicros() + "µs p99=" + getP99Micros() + "µs max=" + getMaxMicros() + "µs | " + shape;
+        }
+    }
+
+    /**
+     *
+     * @param millis statements taking longer are written to the slow query log
+     */
+    public static void setSlowQueryThreshold(long millis) {
+        slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
+    }
+
+    public static long getSlowQueryThreshold() {
+        return TimeUnit.NANOSECONDS.toMillis(slowQueryNanos);
+    }
+
+    /**
+     * Records a statement execution
+     *
+     * @param plugin
+     * @param query
+     * @param nanos
+     * @return the stats of the statement shape
+     */
+    static StatementStats record(String plugin, String query, long nanos) {
+        Map<String, StatementStats> shapes = PLUGINS.computeIfAbsent(plugin, k -> new ConcurrentHashMap<>());
+        String shape = shape(query);
+        StatementStats stats = shapes.get(shape);
+        if (stats == null) {
+            if (shapes.size() >= MAX_SHAPES_PER_PLUGIN) {
+                shape = OTHER;
+            }
+            stats = shapes.computeIfAbsent(shape, s -> new StatementStats(plugin, s));
+        }
+        stats.micros.record(nanos / 1000);
+        STATEMENTS.record(nanos / 1000);
+        return stats;
+    }
+
+    /**
+     * Records a statement execution and writes it to the slow query log if it
+     * took longer than the threshold
+     *
+     * @param plugin
+     * @param query
+     * @param nanos
+     * @param conn   connection the statement ran on, used for the query plan
+     * @param params values bound to the statement, may be null
+     */
+    static void record(String plugin, String query, long nanos, Connection conn, Object[] params) {
+        StatementStats stats = record(plugin, query, nanos);
+        if (nanos < slowQueryNanos) {
+            return;
+        }
+        SLOW.increment();
+        StringBuilder sb = new StringBuilder(256);
+        sb.append('[').append(plugin).append("] ").append(TimeUnit.NANOSECONDS.toMillis(nanos)).append("ms | ")
+                .append(query.length() > MAX_SHAPE_LENGTH ? query.substring(0, MAX_SHAPE_LENGTH) + "..." : query);
+        // the plan is captured on the first slow occurrence of a shape only
+        if (conn != null && stats.shape != OTHER && stats.planCaptured.compareAndSet(false, true)) {
+            sb.append("\n  QUERY PLAN: ").append(explain(conn, query, params));
+        }
+        slowLog().warn(sb.toString());
+    }
+
+    private static String explain(Connection conn, String query, Object[] params) {
+        try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN QUERY PLAN " + query)) {
+            if (params != null) {
+                for (int i = 0; i < params.length; i++) {
+                    stmt.setObject(i + 1, params[i]);
+                }
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = stmt.executeQuery()) {
+                int detail = rs.getMetaData().getColumnCount();
+                while (rs.next()) {
+                    if (plan.length() > 0) {
+                        plan.append(" / ");
+                    }
+                    plan.append(rs.getString(detail));
+                }
+            }
+            return plan.length() > 0 ? plan.toString() : "(empty)";
+        } catch (SQLException e) {
+            return "(not available: " + e.getMessage() + ")";
+        }
+    }
+
+    /**
+     * Replaces string and number literals with {@code ?} and collapses
+     * whitespace
+     *
+     * @param query
+     * @return
+     */
+    public static String shape(String query) {
+        int length = query.length();
+        StringBuilder sb = new StringBuilder(Math.min(length, MAX_SHAPE_LENGTH));
+        boolean space = false;
+        for (int i = 0; i < length && sb.length() < MAX_SHAPE_LENGTH; i++) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = sb.length() > 0;
+                continue;
+            }
+            if (space) {
+                sb.append(' ');
+                space = false;
+            }
+            if (c == '\'') {
+                // skip string literal, '' is an escaped quote
+                i++;
+                while (i < length) {
+                    if (query.charAt(i) == '\'') {
+                        if (i + 1 < length && query.charAt(i + 1) == '\'') {
+                            i++;
+                        } else {
+                            break;
+                        }
+                    }
+                    i++;
+                }
+                sb.append('?');
+            } else if (c >= '0' && c <= '9' && !isIdentifierPart(sb)) {
+                i++;
+                while (i < length && (Character.isDigit(query.charAt(i)) || query.charAt(i) == '.')) {
+                    i++;
+                }
+                i--;
+                sb.append('?');
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    // digits inside identifiers like "table2" are not literals
+    private static boolean isIdentifierPart(StringBuilder sb) {
+        if (sb.length() == 0) {
+            return false;
+        }
+        char prev = sb.charAt(sb.length() - 1);
+        return Character.isLetterOrDigit(prev) || prev == '_';
+    }
+
+    /**
+     *
+     * @return all statement stats, slowest total time first
+     */
+    public static List<StatementStats> snapshot() {
+        List<StatementStats> result = new ArrayList<>();
+        for (Map<String, StatementStats> shapes : PLUGINS.values()) {
+            result.addAll(shapes.values());
+        }
+        result.sort(Comparator.comparingLong(StatementStats::getTotalMicros).reversed());
+        return result;
+    }
+
+    /**
+     *
+     * @param plugin
+     * @return stats of one plugin, slowest total time first
+     */
+    public static List<StatementStats> snapshot(String plugin) {
+        List<StatementStats> result = new ArrayList<>(PLUGINS.getOrDefault(plugin, Map.of()).values());
+        result.sort(Comparator.comparingLong(StatementStats::getTotalMicros).reversed());
+        return result;
+    }
+
+    /**
+     * Writes the statements with the highest total time to the given logger
+     *
+     * @param logger
+     * @param top
+     */
+    public static void logSummary(OZLogger logger, int top) {
+        List<StatementStats> all = snapshot();
+        if (all.isEmpty()) {
+            return;
+        }
+        logger.info("SQLite statement stats (top " + Math.min(top, all.size()) + " of " + all.size()
+                + " by total time)");
+        for (int i = 0; i < Math.min(top, all.size()); i++) {
+            logger.info("  " + all.get(i));
+        }
+    }
+
+    public static void reset() {
+        PLUGINS.clear();
+    }
+}
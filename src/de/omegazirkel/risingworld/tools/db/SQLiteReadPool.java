@@ -0,0 +1,213 @@
+package de.omegazirkel.risingworld.tools.db;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import de.omegazirkel.risingworld.tools.OZLogger;
+import net.risingworld.api.database.Database;
+
+/**
+ * Small pool of read-only connections next to the single writer connection of
+ * {@link SQLite}. Only useful in WAL mode, where readers do not block the
+ * writer (and the other way around).
+ *
+ * Every connection is opened with {@code PRAGMA query_only=ON}, so a write that
+ * was routed here by mistake fails instead of competing with the writer.
+ */
+public class SQLiteReadPool {
+    private static final Pattern WRITE_KEYWORD = Pattern.compile("\\b(INSERT|UPDATE|DELETE|REPLACE)\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    private final BlockingQueue<Database> idle;
+    // all connections of the pool, fixed after the constructor
+    private final Database[] connections;
+    private final int size;
+    private volatile boolean closed = false;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong acquireCount = new AtomicLong();
+    private final AtomicLong waitCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private static OZLogger logger() {
+        return SQLite.logger();
+    }
+
+    /**
+     *
+     * @param opener  opens a new connection to the database file
+     * @param size    number of read connections
+     * @param profile PRAGMAs applied to every connection
+     * @throws SQLException if a connection could not be made read-only, the
+     *                      connections opened so far are closed again
+     */
+    SQLiteReadPool(Supplier<Database> opener, int size, SQLiteProfile profile) throws SQLException {
+        this.size = size;
+        this.idle = new ArrayBlockingQueue<>(size);
+        this.connections = new Database[size];
+        for (int i = 0; i < size; i++) {
+            Database reader = opener.get();
+            connections[i] = reader;
+            try {
+                profile.apply(reader.getConnection());
+                try (Statement stmt = reader.getConnection().createStatement()) {
+                    stmt.execute("PRAGMA query_only=ON");
+                }
+            } catch (Exception e) {
+                // a reader that may write must not be pooled
+                for (int j = 0; j <= i; j++) {
+                    closeQuietly(connections[j]);
+                }
+                throw e instanceof SQLException sqlException ? sqlException
+                        : new SQLException("Failed to prepare read connection", e);
+            }
+            idle.add(reader);
+        }
+    }
+
+    /**
+     * Simple check by the leading keyword, used to route statements to the pool
+     *
+     * @param query
+     * @return true for SELECT, EXPLAIN and WITH ... SELECT statements
+     */
+    public static boolean isReadOnly(String query) {
+        int start = 0;
+        int length = query.length();
+        while (start < length) {
+            char c = query.charAt(start);
+            if (Character.isWhitespace(c) || c == '(') {
+                start++;
+            } else if (query.startsWith("--", start)) {
+                int end = query.indexOf('\n', start);
+                start = end < 0 ? length : end + 1;
+            } else if (query.startsWith("/*", start)) {
+                int end = query.indexOf("*/", start + 2);
+                start = end < 0 ? length : end + 2;
+            } else {
+                break;
+            }
+        }
+        if (query.regionMatches(true, start, "SELECT", 0, 6) || query.regionMatches(true, start, "EXPLAIN", 0, 7)) {
+            return true;
+        }
+        // common table expressions may end in a write statement
+        return query.regionMatches(true, start, "WITH", 0, 4) && !WRITE_KEYWORD.matcher(query).find();
+    }
+
+    /**
+     * Takes a connection from the pool, waits if all connections are in use
+     *
+     * @return
+     * @throws InterruptedException
+     */
+    public Database acquire() throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("SQLite read pool is closed");
+        }
+        Database reader = idle.poll();
+        if (reader == null) {
+            long start = System.nanoTime();
+            reader = idle.take();
+            long waited = System.nanoTime() - start;
+            waitCount.incrementAndGet();
+            totalWaitNanos.addAndGet(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+        }
+        acquireCount.incrementAndGet();
+        active.incrementAndGet();
+        return reader;
+    }
+
+    /**
+     * Returns a connection taken by {@link #acquire()}
+     *
+     * @param reader
+     */
+    public void release(Database reader) {
+        active.decrementAndGet();
+        if (closed) {
+            closeQuietly(reader);
+        } else {
+            idle.add(reader);
+        }
+    }
+
+    /**
+     *
+     * @param reader
+     * @return true if the connection was opened by this pool
+     */
+    public boolean owns(Database reader) {
+        for (Database connection : connections) {
+            if (connection == reader) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public long getAcquireCount() {
+        return acquireCount.get();
+    }
+
+    /**
+     *
+     * @return number of acquisitions that had to wait for a free connection
+     */
+    public long getWaitCount() {
+        return waitCount.get();
+    }
+
+    public long getTotalWaitMillis() {
+        return totalWaitNanos.get() / 1_000_000;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000;
+    }
+
+    /**
+     * Closes all idle connections, connections in use are closed on release
+     */
+    void close() {
+        closed = true;
+        Database reader;
+        while ((reader = idle.poll()) != null) {
+            closeQuietly(reader);
+        }
+    }
+
+    private void closeQuietly(Database reader) {
+        try {
+            reader.close();
+        } catch (Exception e) {
+            logger().error("Exception on close (" + e.getClass().getTypeName() + "): " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "size=" + size + ", active=" + getActiveCount() + ", acquired=" + getAcquireCount() + ", waited="
+                + getWaitCount() + ", totalWait=" + getTotalWaitMillis() + "ms, maxWait=" + getMaxWaitMillis() + "ms";
+    }
+}
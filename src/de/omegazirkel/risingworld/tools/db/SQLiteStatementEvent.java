@@ -0,0 +1,51 @@
+package de.omegazirkel.risingworld.tools.db;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event for a statement that went through {@link SQLite}, the statement is
+ * recorded as its shape (literals replaced by {@code ?}). Statements below 1
+ * ms are not recorded unless the threshold is lowered in the recording
+ * settings.
+ */
+@Name("de.omegazirkel.tools.SQLiteStatement")
+@Label("SQLite Statement")
+@Category({ "OZ Tools", "SQLite" })
+@Description("SQLite statement of a plugin")
+@Threshold("1 ms")
+class SQLiteStatementEvent extends jdk.jfr.Event {
+    @Label("Plugin")
+    String plugin;
+
+    @Label("Statement")
+    @Description("Statement with literals replaced by ?")
+    String statement;
+
+    @Label("Operation")
+    @Description("query, update, execute, batch or kv-flush")
+    String operation;
+
+    SQLiteStatementEvent(String operation) {
+        this.operation = operation;
+    }
+
+    /**
+     * Fills in and commits the event if it is recorded, the statement is only
+     * shaped then
+     *
+     * @param plugin
+     * @param query
+     */
+    void finish(String plugin, String query) {
+        if (!shouldCommit()) {
+            return;
+        }
+        this.plugin = plugin;
+        this.statement = SQLiteQueryStats.shape(query);
+        commit();
+    }
+}
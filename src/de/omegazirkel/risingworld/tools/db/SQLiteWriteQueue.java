@@ -0,0 +1,284 @@
+package de.omegazirkel.risingworld.tools.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+
+import de.omegazirkel.risingworld.tools.OZLogger;
+import net.risingworld.api.database.Database;
+
+/**
+ * Write-behind queue for a {@link SQLite} connection.
+ *
+ * Updates are collected by a single writer thread and committed in one
+ * transaction per batch. A batch is closed when it reaches the max batch size
+ * or when the time window after its first statement has passed. Every
+ * statement runs inside its own savepoint, so one broken statement does not
+ * roll back the rest of the batch.
+ *
+ * Futures are completed on the writer thread, use the async variants of
+ * {@link CompletableFuture} (or {@code plugin.enqueue}) if you need to get
+ * back to the server thread.
+ */
+public class SQLiteWriteQueue {
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+    public static final long DEFAULT_MAX_DELAY_MS = 50;
+
+    private static final PendingWrite STOP = new PendingWrite(null, null, null);
+
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private final Database db;
+    private final Lock writeLock;
+    private final String name;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    // blocking writer loop on the shared scheduler
+    private final Future<?> writerThread;
+    // set by close() and by the writer when it stops, no statement is accepted after that
+    private volatile boolean closed = false;
+    // the final flush runs once, on the writer or in close() if the writer never started
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    // counted down after the final flush
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    private static OZLogger logger() {
+        return SQLite.logger();
+    }
+
+    private record PendingWrite(String query, Object[] params, CompletableFuture<Integer> result) {
+    }
+
+    /**
+     *
+     * @param db           the connection to write to
+     * @param writeLock    lock shared with the synchronous write methods of
+     *                     {@link SQLite}
+     * @param name         plugin name, used for the writer thread and stats
+     * @param maxBatchSize max statements per transaction
+     * @param maxDelay     max time to wait for more statements after the first
+     *                     one of a batch arrived
+     * @param unit
+     */
+    SQLiteWriteQueue(Database db, Lock writeLock, String name, int maxBatchSize, long maxDelay, TimeUnit unit) {
+        this.db = db;
+        this.writeLock = writeLock;
+        this.name = name;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxDelayNanos = Math.max(0, unit.toNanos(maxDelay));
+        this.writerThread = SQLite.scheduler(name).executeBlocking(this::processQueue);
+    }
+
+    /**
+     * Enqueues an update statement
+     *
+     * @param query
+     * @return future with the number of affected rows
+     */
+    public CompletableFuture<Integer> enqueue(String query) {
+        return enqueue(query, null);
+    }
+
+    /**
+     * Enqueues an update statement with bind parameters, it runs as a prepared
+     * statement on the writer thread
+     *
+     * @param query  SQL with {@code ?} placeholders
+     * @param params values bound to the placeholders
+     * @return future with the number of affected rows
+     */
+    public CompletableFuture<Integer> enqueue(String query, Object[] params) {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        if (closed) {
+            result.completeExceptionally(closedException());
+            return result;
+        }
+        PendingWrite write = new PendingWrite(query, params, result);
+        queue.add(write);
+        // the writer stopped meanwhile, its final flush either took the write or it is still queued
+        if (closed && queue.remove(write)) {
+            result.completeExceptionally(closedException());
+        }
+        return result;
+    }
+
+    private static IllegalStateException closedException() {
+        return new IllegalStateException("SQLite write queue is closed");
+    }
+
+    /**
+     *
+     * @return number of statements waiting for the writer thread
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    private void processQueue() {
+        if (!started.compareAndSet(false, true)) {
+            // close() already flushed the queue
+            return;
+        }
+        List<PendingWrite> batch = new ArrayList<>(maxBatchSize);
+        boolean stop = false;
+        try {
+            while (!stop) {
+                PendingWrite first = queue.take();
+                if (first == STOP) {
+                    break;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingWrite next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    if (next == STOP) {
+                        stop = true;
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                executeBatch(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            finish(batch);
+        }
+    }
+
+    // commits what is left and signals the end of the writer, new writes are
+    // rejected from here on
+    private void finish(List<PendingWrite> batch) {
+        try {
+            closed = true;
+            queue.drainTo(batch);
+            batch.removeIf(write -> write == STOP);
+            while (!batch.isEmpty()) {
+                List<PendingWrite> chunk = batch.subList(0, Math.min(maxBatchSize, batch.size()));
+                executeBatch(chunk);
+                chunk.clear();
+            }
+        } finally {
+            stopped.countDown();
+        }
+    }
+
+    private void executeBatch(List<PendingWrite> batch) {
+        int[] counts = new int[batch.size()];
+        SQLException[] errors = new SQLException[batch.size()];
+        SQLException batchError = null;
+
+        writeLock.lock();
+        try {
+            Connection conn = db.getConnection();
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                for (int i = 0; i < batch.size(); i++) {
+                    Savepoint sp = conn.setSavepoint();
+                    String query = batch.get(i).query();
+                    Object[] params = batch.get(i).params();
+                    try {
+                        SQLiteStatementEvent event = new SQLiteStatementEvent("batch");
+                        event.begin();
+                        long start = System.nanoTime();
+                        counts[i] = params != null ? executePrepared(conn, query, params) : stmt.executeUpdate(query);
+                        SQLiteQueryStats.record(name, query, System.nanoTime() - start, conn, params);
+                        event.finish(name, query);
+                        conn.releaseSavepoint(sp);
+                    } catch (SQLException e) {
+                        conn.rollback(sp);
+                        errors[i] = e;
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                batchError = e;
+                try {
+                    conn.rollback();
+                } catch (SQLException re) {
+                    logger().fatal("Exception on rollback (" + re.getClass().getTypeName() + "): " + re.getMessage());
+                }
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (Exception e) {
+            batchError = e instanceof SQLException sqlException ? sqlException : new SQLException(e);
+        } finally {
+            writeLock.unlock();
+        }
+
+        if (batchError != null) {
+            logger().fatal("[" + name + "] Write batch of " + batch.size() + " statements failed ("
+                    + batchError.getClass().getTypeName() + "): " + batchError.getMessage());
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            PendingWrite write = batch.get(i);
+            if (batchError != null) {
+                write.result().completeExceptionally(batchError);
+            } else if (errors[i] != null) {
+                logger().fatal("[" + name + "] Exception (" + errors[i].getClass().getTypeName() + "): "
+                        + errors[i].getMessage() + " | " + SQLiteQueryStats.shape(write.query()));
+                write.result().completeExceptionally(errors[i]);
+            } else {
+                write.result().complete(counts[i]);
+            }
+        }
+    }
+
+    private static int executePrepared(Connection conn, String query, Object[] params) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            for (int i = 0; i < params.length; i++) {
+                stmt.setObject(i + 1, params[i]);
+            }
+            return stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Stops accepting new statements and waits until everything enqueued so far
+     * has been committed.
+     *
+     * @param timeout
+     * @param unit
+     * @return true if the queue was flushed completely within the timeout
+     */
+    public boolean close(long timeout, TimeUnit unit) {
+        closed = true;
+        queue.add(STOP);
+        if (writerThread.isCancelled() && started.compareAndSet(false, true)) {
+            // cancelled before the loop ran, nobody else will flush
+            finish(new ArrayList<>());
+        }
+        try {
+            // waits for the final flush, not only for the (possibly cancelled) task
+            if (stopped.await(timeout, unit)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger().fatal("SQLite write queue did not flush within " + timeout + " " + unit + ", "
+                + queue.size() + " statements left");
+        return false;
+    }
+}
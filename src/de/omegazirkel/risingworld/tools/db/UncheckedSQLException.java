@@ -0,0 +1,19 @@
+package de.omegazirkel.risingworld.tools.db;
+
+import java.sql.SQLException;
+
+/**
+ * Wraps a {@link SQLException} thrown while a lazy query stream is consumed
+ */
+public class UncheckedSQLException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public UncheckedSQLException(SQLException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
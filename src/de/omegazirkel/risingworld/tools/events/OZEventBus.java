@@ -0,0 +1,374 @@
+package de.omegazirkel.risingworld.tools.events;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import de.omegazirkel.risingworld.tools.MainThreadQueue;
+import de.omegazirkel.risingworld.tools.OZLogger;
+import de.omegazirkel.risingworld.tools.OZScheduler;
+import de.omegazirkel.risingworld.tools.metrics.Counter;
+import de.omegazirkel.risingworld.tools.metrics.Histogram;
+import de.omegazirkel.risingworld.tools.metrics.Metrics;
+import net.risingworld.api.Plugin;
+
+/**
+ * Typed publish/subscribe between OZ plugins in the same server, without a
+ * round trip through a WebSocket relay.
+ *
+ * Subscribers are kept in a copy-on-write array per event class, publishing
+ * only reads these arrays and never locks. A subscriber receives the events
+ * of its class and all subclasses. Events have to be immutable, one instance
+ * is handed to all subscribers. Event classes shared between plugins must come
+ * from a jar both plugins see (e.g. the tools jar or a common API jar),
+ * otherwise each plugin has its own class with the same name.
+ *
+ * <pre>
+ * public record PlayerRankChanged(String uid, String rank) {}
+ *
+ * // plugin A
+ * OZEventBus.subscribe(this, PlayerRankChanged.class, Delivery.ORDERED, e -&gt; updateDiscordRole(e));
+ *
+ * // plugin B
+ * OZEventBus.publish(new PlayerRankChanged(player.getUID(), "admin"));
+ *
+ * // onDisable of plugin A
+ * OZEventBus.unsubscribeAll(this);
+ * </pre>
+ *
+ * All subscriptions are removed when the tools plugin is disabled (e.g. on
+ * {@code reloadplugins}).
+ */
+public final class OZEventBus {
+
+    /**
+     * Where and in which order a subscriber receives its events
+     */
+    public enum Delivery {
+        /** on the publishing thread, before publish returns */
+        SYNC,
+        /** on a background thread, events may be handled in parallel and out of order */
+        ASYNC,
+        /** on a background thread, one at a time in publish order (a lane per subscriber) */
+        ORDERED,
+        /** on the server thread via the {@link MainThreadQueue}, in publish order */
+        MAIN_THREAD
+    }
+
+    private static final Subscription[] NONE = new Subscription[0];
+    // subscribers by event class, replaced as a whole on every change
+    private static final Map<Class<?>, Subscription[]> SUBSCRIBERS = new ConcurrentHashMap<>();
+    // event class -> the class itself and all its superclasses and interfaces, stored on
+    // the class so classes of other plugins are not kept after their class loader is gone
+    private static final ClassValue<Class<?>[]> HIERARCHY = new ClassValue<>() {
+        @Override
+        protected Class<?>[] computeValue(Class<?> type) {
+            Set<Class<?>> types = new LinkedHashSet<>();
+            collect(type, types);
+            return types.toArray(new Class<?>[0]);
+        }
+    };
+
+    private static final Counter PUBLISHED = Metrics.counter("eventbus.published");
+    private static final Counter DELIVERED = Metrics.counter("eventbus.delivered");
+    private static final Counter UNHANDLED = Metrics.counter("eventbus.unhandled");
+    private static final Counter FAILURES = Metrics.counter("eventbus.failures");
+    // publish until the handler starts and handler run time
+    private static final Histogram DELAY = Metrics.histogram("eventbus.delay.micros");
+    private static final Histogram HANDLER = Metrics.histogram("eventbus.handler.micros");
+    static {
+        Metrics.gauge("eventbus.subscribers", OZEventBus::getSubscriberCount);
+    }
+
+    private OZEventBus() {
+    }
+
+    private static OZLogger logger() {
+        return OZLogger.getInstance("OZ.Tools.EventBus");
+    }
+
+    /**
+     * A registered handler, cancel it to stop receiving events
+     */
+    public static final class Subscription {
+        private final String owner;
+        private final Class<?> type;
+        private final Delivery delivery;
+        private final Consumer<Object> handler;
+        // ORDERED only: pending events and their number (the drain runs while > 0)
+        private final Queue<Object[]> lane;
+        private final AtomicInteger laneSize;
+        private volatile boolean active = true;
+
+        @SuppressWarnings("unchecked")
+        private Subscription(String owner, Class<?> type, Delivery delivery, Consumer<?> handler) {
+            this.owner = owner;
+            this.type = type;
+            this.delivery = delivery;
+            this.handler = (Consumer<Object>) handler;
+            this.lane = delivery == Delivery.ORDERED ? new ConcurrentLinkedQueue<>() : null;
+            this.laneSize = delivery == Delivery.ORDERED ? new AtomicInteger() : null;
+        }
+
+        public String getOwner() {
+            return owner;
+        }
+
+        public Class<?> getType() {
+            return type;
+        }
+
+        public Delivery getDelivery() {
+            return delivery;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        /**
+         * Stops the delivery, events already queued for this subscriber are dropped
+         */
+        public void cancel() {
+            unsubscribe(this);
+        }
+    }
+
+    /**
+     * Subscribes with {@link Delivery#SYNC}
+     *
+     * @param <E>
+     * @param owner
+     * @param type    event class, subclasses are delivered too
+     * @param handler
+     * @return
+     */
+    public static <E> Subscription subscribe(Plugin owner, Class<E> type, Consumer<? super E> handler) {
+        return subscribe(owner.getName(), type, Delivery.SYNC, handler);
+    }
+
+    public static <E> Subscription subscribe(Plugin owner, Class<E> type, Delivery delivery,
+            Consumer<? super E> handler) {
+        return subscribe(owner.getName(), type, delivery, handler);
+    }
+
+    /**
+     *
+     * @param <E>
+     * @param owner    name the subscription is tracked under, see
+     *                 {@link #unsubscribeAll(String)}
+     * @param type     event class, subclasses are delivered too
+     * @param delivery
+     * @param handler
+     * @return
+     */
+    public static <E> Subscription subscribe(String owner, Class<E> type, Delivery delivery,
+            Consumer<? super E> handler) {
+        Subscription subscription = new Subscription(owner, type, delivery, handler);
+        SUBSCRIBERS.compute(type, (k, current) -> {
+            Subscription[] next = current == null ? new Subscription[1] : Arrays.copyOf(current, current.length + 1);
+            next[next.length - 1] = subscription;
+            return next;
+        });
+        return subscription;
+    }
+
+    /**
+     *
+     * @param subscription
+     * @return false if it was not subscribed (anymore)
+     */
+    public static boolean unsubscribe(Subscription subscription) {
+        subscription.active = false;
+        boolean[] removed = { false };
+        SUBSCRIBERS.computeIfPresent(subscription.type, (k, current) -> {
+            Subscription[] next = Arrays.stream(current).filter(s -> s != subscription).toArray(Subscription[]::new);
+            removed[0] = next.length < current.length;
+            return next.length == 0 ? null : next;
+        });
+        if (subscription.lane != null) {
+            subscription.lane.clear();
+        }
+        return removed[0];
+    }
+
+    public static int unsubscribeAll(Plugin owner) {
+        return unsubscribeAll(owner.getName());
+    }
+
+    /**
+     * Removes all subscriptions of an owner, call it in onDisable
+     *
+     * @param owner
+     * @return number of removed subscriptions
+     */
+    public static int unsubscribeAll(String owner) {
+        List<Subscription> owned = new ArrayList<>();
+        for (Subscription[] subscriptions : SUBSCRIBERS.values()) {
+            for (Subscription s : subscriptions) {
+                if (s.owner.equals(owner)) {
+                    owned.add(s);
+                }
+            }
+        }
+        for (Subscription s : owned) {
+            unsubscribe(s);
+        }
+        return owned.size();
+    }
+
+    /**
+     * Removes all subscriptions, called when the tools plugin is disabled
+     *
+     * @return number of removed subscriptions
+     */
+    public static int clear() {
+        int removed = 0;
+        for (Subscription[] subscriptions : SUBSCRIBERS.values()) {
+            for (Subscription s : subscriptions) {
+                s.active = false;
+                if (s.lane != null) {
+                    s.lane.clear();
+                }
+                removed++;
+            }
+        }
+        SUBSCRIBERS.clear();
+        return removed;
+    }
+
+    public static int getSubscriberCount() {
+        int count = 0;
+        for (Subscription[] subscriptions : SUBSCRIBERS.values()) {
+            count += subscriptions.length;
+        }
+        return count;
+    }
+
+    /**
+     *
+     * @param type
+     * @return subscribers that receive events of this class
+     */
+    public static int getSubscriberCount(Class<?> type) {
+        int count = 0;
+        for (Class<?> c : HIERARCHY.get(type)) {
+            count += SUBSCRIBERS.getOrDefault(c, NONE).length;
+        }
+        return count;
+    }
+
+    /**
+     * Delivers the event to all subscribers of its class and superclasses. SYNC
+     * subscribers have handled it when this returns, a failing subscriber does
+     * not stop the others.
+     *
+     * @param event
+     * @return number of subscribers the event was delivered or queued to
+     */
+    public static int publish(Object event) {
+        PUBLISHED.increment();
+        long publishedAt = System.nanoTime();
+        int delivered = 0;
+        for (Class<?> c : HIERARCHY.get(event.getClass())) {
+            Subscription[] subscriptions = SUBSCRIBERS.get(c);
+            if (subscriptions == null) {
+                continue;
+            }
+            for (Subscription s : subscriptions) {
+                if (dispatch(s, event, publishedAt)) {
+                    delivered++;
+                }
+            }
+        }
+        if (delivered == 0) {
+            UNHANDLED.increment();
+        }
+        return delivered;
+    }
+
+    private static boolean dispatch(Subscription s, Object event, long publishedAt) {
+        try {
+            switch (s.delivery) {
+                case SYNC -> handle(s, event, publishedAt);
+                case ASYNC -> OZScheduler.getBlockingExecutor().execute(() -> handle(s, event, publishedAt));
+                case MAIN_THREAD -> MainThreadQueue.submit(() -> handle(s, event, publishedAt));
+                case ORDERED -> {
+                    Object[] pending = { event, publishedAt };
+                    s.lane.add(pending);
+                    if (s.laneSize.getAndIncrement() == 0) {
+                        startDrain(s, pending);
+                    }
+                }
+            }
+            return true;
+        } catch (RejectedExecutionException e) {
+            // the executor is shut down while the tools plugin is disabled
+            FAILURES.increment();
+            return false;
+        }
+    }
+
+    private static void startDrain(Subscription s, Object[] pending) {
+        try {
+            OZScheduler.getBlockingExecutor().execute(() -> drain(s));
+        } catch (RejectedExecutionException e) {
+            // no drain runs, so this publisher owns the lane until its size is back to 0;
+            // events other publishers queued in the meantime are dropped as well
+            s.lane.remove(pending);
+            while (s.laneSize.decrementAndGet() > 0) {
+                if (s.lane.poll() != null) {
+                    FAILURES.increment();
+                }
+            }
+            throw e;
+        }
+    }
+
+    // runs until the lane is empty, a new event after that starts a new drain
+    private static void drain(Subscription s) {
+        do {
+            Object[] pending = s.lane.poll();
+            if (pending != null) {
+                handle(s, pending[0], (Long) pending[1]);
+            }
+        } while (s.laneSize.decrementAndGet() > 0);
+    }
+
+    private static void handle(Subscription s, Object event, long publishedAt) {
+        if (!s.active) {
+            return;
+        }
+        long start = System.nanoTime();
+        DELAY.record((start - publishedAt) / 1000);
+        try {
+            s.handler.accept(event);
+            DELIVERED.increment();
+        } catch (Exception e) {
+            FAILURES.increment();
+            logger().error("[" + s.owner + "] Handler for " + event.getClass().getSimpleName() + " failed ("
+                    + e.getClass().getTypeName() + "): " + e.getMessage());
+        } finally {
+            HANDLER.record((System.nanoTime() - start) / 1000);
+        }
+    }
+
+    private static void collect(Class<?> type, Set<Class<?>> types) {
+        if (type == null || !types.add(type)) {
+            return;
+        }
+        collect(type.getSuperclass(), types);
+        for (Class<?> i : type.getInterfaces()) {
+            collect(i, types);
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package de.omegazirkel.risingworld.tools.http;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.config.TlsConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import de.omegazirkel.risingworld.tools.OZLogger;
+import de.omegazirkel.risingworld.tools.Settings;
+import de.omegazirkel.risingworld.tools.metrics.Counter;
+import de.omegazirkel.risingworld.tools.metrics.Histogram;
+import de.omegazirkel.risingworld.tools.metrics.Metrics;
+
+/**
+ * Shared async HTTP client (httpclient5) for the tools and all OZ plugins.
+ *
+ * All requests share one connection pool, so connections to the same host
+ * are kept alive and reused instead of a new TCP/TLS handshake per call. TLS
+ * connections use HTTP/2 if the server supports it (ALPN), then all requests
+ * to that host are multiplexed over one connection. The client is started by
+ * the tools plugin in onEnable and closed in onDisable, do not close it
+ * yourself.
+ *
+ * <pre>
+ * OZHttpClient.post("https://stats.example.com/api/online", json, ContentType.APPLICATION_JSON)
+ *         .thenAccept(response -> logger().info("Stats sent: " + response.getCode()))
+ *         .exceptionally(e -> { logger().error("Stats failed: " + e.getMessage()); return null; });
+ * </pre>
+ *
+ * Callbacks run on the I/O threads of the client and have to be short, use
+ * the {@link de.omegazirkel.risingworld.tools.MainThreadQueue} for server work.
+ */
+public final class OZHttpClient {
+
+    private static CloseableHttpAsyncClient client = null;
+    private static PoolingAsyncClientConnectionManager manager = null;
+    private static Options options = null;
+
+    private static final Histogram LATENCY = Metrics.histogram("http.request.micros");
+    private static final Counter REQUESTS = Metrics.counter("http.requests");
+    private static final Counter FAILED = Metrics.counter("http.failed");
+    private static final Counter CLIENT_ERRORS = Metrics.counter("http.status.4xx");
+    private static final Counter SERVER_ERRORS = Metrics.counter("http.status.5xx");
+    static {
+        Metrics.gauge("http.pool.leased", () -> stats().getLeased());
+        Metrics.gauge("http.pool.available", () -> stats().getAvailable());
+        Metrics.gauge("http.pool.pending", () -> stats().getPending());
+        Metrics.gauge("http.pool.max", () -> stats().getMax());
+        Metrics.gauge("http.pool.routes", () -> manager != null ? manager.getRoutes().size() : 0);
+    }
+
+    private OZHttpClient() {
+    }
+
+    private static OZLogger logger() {
+        return OZLogger.getInstance("OZ.Tools.Http");
+    }
+
+    /**
+     * Pool and timeout settings, read from the tools settings.properties
+     *
+     * @param maxConnections  connections over all hosts
+     * @param maxPerRoute     connections per host
+     * @param routeLimits     connections per host for single hosts, key is
+     *                        scheme://host[:port]
+     * @param connectTimeout
+     * @param responseTimeout
+     * @param keepAlive       max time an idle connection is kept if the server
+     *                        does not send a shorter Keep-Alive
+     * @param ioThreads
+     */
+    public record Options(int maxConnections, int maxPerRoute, Map<String, Integer> routeLimits,
+            Duration connectTimeout, Duration responseTimeout, Duration keepAlive, int ioThreads) {
+
+        public static Options defaults() {
+            return of(Settings.empty());
+        }
+
+        /**
+         * http.maxConnections, http.maxPerRoute, http.routes (e.g.
+         * https://api.example.com=20,http://127.0.0.1:8080=2),
+         * http.connectTimeout, http.responseTimeout, http.keepAlive and
+         * http.ioThreads
+         *
+         * @param s
+         * @return
+         */
+        public static Options of(Settings s) {
+            Map<String, Integer> routes = new HashMap<>();
+            for (String entry : s.getList("http.routes")) {
+                int split = entry.lastIndexOf('=');
+                try {
+                    routes.put(entry.substring(0, split).trim(), Integer.parseInt(entry.substring(split + 1).trim()));
+                } catch (RuntimeException e) {
+                    logger().warn("⚠️ Invalid http.routes entry: '" + entry + "', expected scheme://host[:port]=max");
+                }
+            }
+            return new Options(
+                    Math.max(1, s.getInt("http.maxConnections", 50)),
+                    Math.max(1, s.getInt("http.maxPerRoute", 10)),
+                    Map.copyOf(routes),
+                    s.getDuration("http.connectTimeout", Duration.ofSeconds(10)),
+                    s.getDuration("http.responseTimeout", Duration.ofSeconds(30)),
+                    s.getDuration("http.keepAlive", Duration.ofMinutes(2)),
+                    Math.max(1, s.getInt("http.ioThreads", 2)));
+        }
+    }
+
+    /**
+     * Starts the client, or replaces it if the options changed (running
+     * requests of the old client are completed). Called by the tools plugin.
+     *
+     * @param newOptions
+     */
+    public static void start(Options newOptions) {
+        CloseableHttpAsyncClient old;
+        synchronized (OZHttpClient.class) {
+            if (client != null && newOptions.equals(options)) {
+                return;
+            }
+            PoolingAsyncClientConnectionManager cm = PoolingAsyncClientConnectionManagerBuilder.create()
+                    .setMaxConnTotal(newOptions.maxConnections())
+                    .setMaxConnPerRoute(newOptions.maxPerRoute())
+                    .setDefaultConnectionConfig(ConnectionConfig.custom()
+                            .setConnectTimeout(Timeout.of(newOptions.connectTimeout()))
+                            .setSocketTimeout(Timeout.of(newOptions.responseTimeout()))
+                            // stale connections are checked before reuse
+                            .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+                            .build())
+                    .setDefaultTlsConfig(TlsConfig.custom()
+                            .setVersionPolicy(HttpVersionPolicy.NEGOTIATE)
+                            .build())
+                    .build();
+            for (Map.Entry<String, Integer> route : newOptions.routeLimits().entrySet()) {
+                try {
+                    cm.setMaxPerRoute(route(route.getKey()), route.getValue());
+                } catch (RuntimeException e) {
+                    logger().warn("⚠️ Invalid http.routes entry: '" + route.getKey() + "' (" + e.getMessage() + ")");
+                }
+            }
+            CloseableHttpAsyncClient c = HttpAsyncClients.custom()
+                    .setConnectionManager(cm)
+                    .setIOReactorConfig(IOReactorConfig.custom()
+                            .setIoThreadCount(newOptions.ioThreads())
+                            .build())
+                    .setDefaultRequestConfig(RequestConfig.custom()
+                            .setConnectionRequestTimeout(Timeout.of(newOptions.connectTimeout()))
+                            .setResponseTimeout(Timeout.of(newOptions.responseTimeout()))
+                            .setDefaultKeepAlive(newOptions.keepAlive().toMillis(), TimeUnit.MILLISECONDS)
+                            .build())
+                    .evictExpiredConnections()
+                    .evictIdleConnections(TimeValue.of(newOptions.keepAlive()))
+                    .setUserAgent("OZTools")
+                    .build();
+            c.start();
+            old = client;
+            client = c;
+            manager = cm;
+            options = newOptions;
+        }
+        if (old != null) {
+            old.close(CloseMode.GRACEFUL);
+        }
+        logger().info("✅ HTTP client started (" + newOptions.maxConnections() + " connections, "
+                + newOptions.maxPerRoute() + " per host)");
+    }
+
+    // the route the client uses for requests to this host
+    private static HttpRoute route(String uri) {
+        HttpHost host = HttpHost.create(URI.create(uri));
+        boolean secure = "https".equalsIgnoreCase(host.getSchemeName());
+        int port = host.getPort() > 0 ? host.getPort() : secure ? 443 : 80;
+        return new HttpRoute(new HttpHost(host.getSchemeName(), host.getHostName(), port), null, secure);
+    }
+
+    /**
+     * Closes the client and all connections, running requests get up to 5
+     * seconds. Called by the tools plugin on disable.
+     */
+    public static void shutdown() {
+        CloseableHttpAsyncClient c;
+        synchronized (OZHttpClient.class) {
+            c = client;
+            client = null;
+            manager = null;
+            options = null;
+        }
+        if (c == null) {
+            return;
+        }
+        c.initiateShutdown();
+        try {
+            c.awaitShutdown(TimeValue.ofSeconds(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        c.close(CloseMode.IMMEDIATE);
+    }
+
+    public static synchronized boolean isRunning() {
+        return client != null;
+    }
+
+    /**
+     *
+     * @return the shared client for requests beyond the helpers, e.g. streaming
+     * @throws IllegalStateException if the tools plugin is not enabled
+     */
+    public static synchronized CloseableHttpAsyncClient getClient() {
+        if (client == null) {
+            throw new IllegalStateException("HTTP client is not running, is the tools plugin enabled?");
+        }
+        return client;
+    }
+
+    /**
+     *
+     * @return connections over all hosts
+     */
+    public static PoolStats getStats() {
+        return stats();
+    }
+
+    /**
+     *
+     * @param uri scheme://host[:port]
+     * @return connections to this host
+     */
+    public static PoolStats getStats(String uri) {
+        PoolingAsyncClientConnectionManager cm = manager;
+        return cm != null ? cm.getStats(route(uri)) : new PoolStats(0, 0, 0, 0);
+    }
+
+    private static PoolStats stats() {
+        PoolingAsyncClientConnectionManager cm = manager;
+        return cm != null ? cm.getTotalStats() : new PoolStats(0, 0, 0, 0);
+    }
+
+    /**
+     *
+     * @param request
+     * @return completed with the response (any status code) or the I/O error
+     */
+    public static CompletableFuture<SimpleHttpResponse> execute(SimpleHttpRequest request) {
+        CompletableFuture<SimpleHttpResponse> result = new CompletableFuture<>();
+        long start = System.nanoTime();
+        REQUESTS.increment();
+        try {
+            getClient().execute(request, new FutureCallback<SimpleHttpResponse>() {
+                @Override
+                public void completed(SimpleHttpResponse response) {
+                    LATENCY.record((System.nanoTime() - start) / 1000);
+                    if (response.getCode() >= 500) {
+                        SERVER_ERRORS.increment();
+                    } else if (response.getCode() >= 400) {
+                        CLIENT_ERRORS.increment();
+                    }
+                    result.complete(response);
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    FAILED.increment();
+                    result.completeExceptionally(e);
+                }
+
+                @Override
+                public void cancelled() {
+                    FAILED.increment();
+                    result.cancel(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            FAILED.increment();
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    public static CompletableFuture<SimpleHttpResponse> get(String uri) {
+        return execute(SimpleRequestBuilder.get(uri).build());
+    }
+
+    /**
+     *
+     * @param uri
+     * @param body
+     * @param contentType e.g. ContentType.APPLICATION_JSON
+     * @return
+     */
+    public static CompletableFuture<SimpleHttpResponse> post(String uri, String body, ContentType contentType) {
+        return execute(SimpleRequestBuilder.post(uri).setBody(body, contentType).build());
+    }
+}
@@ -0,0 +1,165 @@
+package de.omegazirkel.risingworld.tools.log;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.Filter;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.config.Property;
+import org.apache.logging.log4j.core.filter.ThresholdFilter;
+
+import de.omegazirkel.risingworld.tools.OZLogger;
+
+/**
+ * Log4j appender that forwards the events of selected OZLogger names to a
+ * {@link DiscordWebhook}.
+ *
+ * Configured by the tools plugin from its settings.properties:
+ *
+ * <pre>
+ * discord.webhookUrl=https://discord.com/api/webhooks/...
+ * # logger names, a trailing * selects all loggers with that prefix
+ * discord.loggers=OZ.Tools,OZ.Tools.SQLite*
+ * discord.level=WARN
+ * discord.messagesPerMinute=20
+ * </pre>
+ *
+ * Every selected logger gets its own appender (each OZLogger has its own
+ * LoggerContext), all of them share one webhook and therefore one buffer and
+ * one rate limit. Loggers created later are attached when they are
+ * initialized.
+ */
+public class DiscordLogAppender extends AbstractAppender {
+    private static DiscordWebhook webhook = null;
+    private static List<String> selected = List.of();
+    private static Level level = Level.WARN;
+    private static List<Object> configured = List.of();
+    // attached appenders by logger name
+    private static final Map<String, Attachment> ATTACHED = new HashMap<>();
+
+    private record Attachment(OZLogger logger, DiscordLogAppender appender) {
+    }
+
+    private final DiscordWebhook target;
+
+    private static OZLogger logger() {
+        return OZLogger.getInstance("OZ.Tools");
+    }
+
+    private DiscordLogAppender(String name, Filter filter, DiscordWebhook target) {
+        super(name, filter, null, true, Property.EMPTY_ARRAY);
+        this.target = target;
+    }
+
+    @Override
+    public void append(LogEvent event) {
+        if (event.getMarker() != null && event.getMarker().isInstanceOf(OZLogger.CONSOLE_ONLY)) {
+            return;
+        }
+        target.offer(event.getLevel().name(), event.getLoggerName(), event.getMessage().getFormattedMessage(),
+                event.getTimeMillis());
+    }
+
+    /**
+     * Replaces the current configuration, pending lines of a previous webhook
+     * are sent first. Nothing happens if the configuration did not change.
+     *
+     * @param webhookUrl        empty or null to disable
+     * @param loggerNames       logger names, a trailing * matches a prefix
+     * @param minLevel          lowest level that is sent
+     * @param messagesPerMinute
+     * @param flushMillis       time to collect lines before a message is sent
+     */
+    public static void configure(String webhookUrl, List<String> loggerNames, Level minLevel,
+            int messagesPerMinute, long flushMillis) {
+        String url = webhookUrl == null ? "" : webhookUrl.trim();
+        List<Object> signature = List.of(url, List.copyOf(loggerNames), minLevel, messagesPerMinute, flushMillis);
+        DiscordWebhook created;
+        synchronized (DiscordLogAppender.class) {
+            if (signature.equals(configured)) {
+                return;
+            }
+        }
+        shutdown();
+        synchronized (DiscordLogAppender.class) {
+            configured = signature;
+        }
+        if (url.isEmpty() || loggerNames.isEmpty()) {
+            return;
+        }
+        try {
+            created = new DiscordWebhook(URI.create(url), messagesPerMinute, flushMillis, TimeUnit.MILLISECONDS);
+        } catch (IllegalArgumentException e) {
+            logger().error("❌ Invalid discord.webhookUrl: " + e.getMessage());
+            return;
+        }
+        synchronized (DiscordLogAppender.class) {
+            webhook = created;
+            selected = List.copyOf(loggerNames);
+            level = minLevel;
+            for (OZLogger logger : OZLogger.getInstances()) {
+                attach(logger);
+            }
+        }
+        logger().info("ℹ️ Sending " + minLevel + " and above of " + loggerNames + " to the Discord webhook at "
+                + created.getUri().getHost());
+    }
+
+    /**
+     * Attaches the appender if the logger is selected, called by OZLogger after
+     * its context was started
+     *
+     * @param logger
+     */
+    public static synchronized void attach(OZLogger logger) {
+        String name = logger.getLoggerName();
+        if (webhook == null || ATTACHED.containsKey(name) || !isSelected(name)) {
+            return;
+        }
+        DiscordLogAppender appender = new DiscordLogAppender("Discord-" + name,
+                ThresholdFilter.createFilter(level, Filter.Result.ACCEPT, Filter.Result.DENY), webhook);
+        appender.start();
+        if (!logger.addAppender(appender)) {
+            appender.stop();
+            return;
+        }
+        ATTACHED.put(name, new Attachment(logger, appender));
+    }
+
+    private static boolean isSelected(String name) {
+        for (String s : selected) {
+            if (s.endsWith("*") ? name.startsWith(s.substring(0, s.length() - 1)) : name.equals(s)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Detaches all appenders and sends the pending lines (waits up to 5
+     * seconds), called by the tools plugin on disable
+     */
+    public static void shutdown() {
+        DiscordWebhook closing;
+        synchronized (DiscordLogAppender.class) {
+            for (Attachment a : ATTACHED.values()) {
+                a.logger().removeAppender(a.appender());
+                a.appender().stop();
+            }
+            ATTACHED.clear();
+            selected = List.of();
+            configured = List.of();
+            closing = webhook;
+            webhook = null;
+        }
+        // outside the lock, loggers created meanwhile must not wait for the requests
+        if (closing != null) {
+            closing.close(5, TimeUnit.SECONDS);
+        }
+    }
+}
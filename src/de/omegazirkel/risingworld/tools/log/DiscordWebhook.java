@@ -0,0 +1,348 @@
+package de.omegazirkel.risingworld.tools.log;
+
+import java.net.URI;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.logging.log4j.status.StatusLogger;
+
+import de.omegazirkel.risingworld.tools.OZScheduler;
+import de.omegazirkel.risingworld.tools.http.OZHttpClient;
+import de.omegazirkel.risingworld.tools.metrics.Counter;
+import de.omegazirkel.risingworld.tools.metrics.Metrics;
+
+/**
+ * Sends log lines to a Discord webhook in batches.
+ *
+ * Lines are buffered and identical lines (same logger, level and message) are
+ * merged into one line with a count. Every flush interval as many lines as fit
+ * into one Discord message (2000 characters) are posted, at most
+ * {@code messagesPerMinute} messages per minute (token bucket, bursts up to 5).
+ * While the bucket is empty or a request is running the lines stay buffered
+ * and keep being merged, if the buffer is full new lines are dropped and
+ * counted. A rate limit answer (HTTP 429) pauses sending for its
+ * {@code Retry-After}.
+ *
+ * Requests go through the shared {@link OZHttpClient}, which has to be
+ * started.
+ *
+ * Errors are reported to the Log4j status logger, never to an OZLogger, so a
+ * failing webhook can not feed itself.
+ */
+public final class DiscordWebhook {
+    public static final int MAX_CONTENT = 2000;
+    public static final int MAX_BUFFERED = 200;
+    public static final int BURST = 5;
+    // room for "... <n> lines dropped\n" after the lines of a message
+    private static final int DROPPED_RESERVE = 40;
+    // a single line never exceeds one message, including its newline and the dropped line
+    private static final int MAX_LINE = MAX_CONTENT - DROPPED_RESERVE - 1;
+
+    private static final StatusLogger STATUS = StatusLogger.getLogger();
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss")
+            .withZone(ZoneId.systemDefault());
+
+    private static final Counter EVENTS = Metrics.counter("discord.events");
+    private static final Counter COALESCED = Metrics.counter("discord.coalesced");
+    private static final Counter DROPPED = Metrics.counter("discord.dropped");
+    private static final Counter SENT = Metrics.counter("discord.messages.sent");
+    private static final Counter FAILED = Metrics.counter("discord.messages.failed");
+    private static final Counter RATE_LIMITED = Metrics.counter("discord.ratelimited");
+    // seconds in the json body of a 429, e.g. {"retry_after": 1.5, ...}
+    private static final Pattern RETRY_AFTER = Pattern.compile("\"retry_after\"\\s*:\\s*([0-9.]+)");
+
+    private final URI uri;
+    private final TokenBucket bucket;
+    private final ScheduledFuture<?> flusher;
+    // guarded by itself, insertion order = order of the first occurrence
+    private final Map<String, Line> buffer = new LinkedHashMap<>();
+    private final AtomicBoolean inFlight = new AtomicBoolean(false);
+    private volatile boolean closed = false;
+    private long dropped = 0;
+
+    private static final class Line {
+        private final String level;
+        private final String loggerName;
+        private final String message;
+        private final long firstMillis;
+        private int count = 1;
+
+        private Line(String level, String loggerName, String message, long firstMillis) {
+            this.level = level;
+            this.loggerName = loggerName;
+            this.message = message;
+            this.firstMillis = firstMillis;
+        }
+
+        private String format() {
+            String line = "**" + level + "** `" + loggerName + "` " + TIME.format(Instant.ofEpochMilli(firstMillis))
+                    + " " + message;
+            if (count > 1) {
+                line += " (x" + count + ")";
+            }
+            return line.length() > MAX_LINE ? line.substring(0, MAX_LINE - 3) + "..." : line;
+        }
+    }
+
+    /**
+     *
+     * @param uri               webhook url, any http endpoint accepting the
+     *                          Discord json works (e.g. a local stand-in)
+     * @param messagesPerMinute
+     * @param flushInterval     time to collect lines before a message is sent
+     * @param unit
+     */
+    public DiscordWebhook(URI uri, int messagesPerMinute, long flushInterval, TimeUnit unit) {
+        this.uri = uri;
+        this.bucket = new TokenBucket(BURST, messagesPerMinute);
+        this.flusher = OZScheduler.getInstance("OZ.Tools.Discord").scheduleWithFixedDelay(this::flush,
+                flushInterval, flushInterval, unit);
+        Metrics.gauge("discord.pending", this::getPendingCount);
+    }
+
+    public URI getUri() {
+        return uri;
+    }
+
+    /**
+     *
+     * @return distinct lines waiting to be sent
+     */
+    public int getPendingCount() {
+        synchronized (buffer) {
+            return buffer.size();
+        }
+    }
+
+    /**
+     * Buffers a line, merges it with a pending identical line
+     *
+     * @param level
+     * @param loggerName
+     * @param message
+     * @param timeMillis
+     */
+    public void offer(String level, String loggerName, String message, long timeMillis) {
+        if (closed) {
+            return;
+        }
+        EVENTS.increment();
+        String key = loggerName + '\u0000' + level + '\u0000' + message;
+        synchronized (buffer) {
+            Line line = buffer.get(key);
+            if (line != null) {
+                line.count++;
+                COALESCED.increment();
+                return;
+            }
+            if (buffer.size() >= MAX_BUFFERED) {
+                dropped++;
+                DROPPED.increment();
+                return;
+            }
+            buffer.put(key, new Line(level, loggerName, message, timeMillis));
+        }
+    }
+
+    /**
+     * Sends the next batch if the rate limit allows it, called periodically
+     */
+    public void flush() {
+        if (!inFlight.compareAndSet(false, true)) {
+            return;
+        }
+        if (getPendingCount() == 0 || !bucket.tryAcquire()) {
+            inFlight.set(false);
+            return;
+        }
+        List<Line> batch = takeBatch();
+        try {
+            send(render(batch)).whenComplete((response, e) -> {
+                try {
+                    handleResponse(batch, response, e);
+                } finally {
+                    inFlight.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.set(false);
+            handleResponse(batch, null, e);
+        }
+    }
+
+    private List<Line> takeBatch() {
+        List<Line> batch = new ArrayList<>();
+        synchronized (buffer) {
+            int length = 0;
+            Iterator<Line> it = buffer.values().iterator();
+            while (it.hasNext()) {
+                Line line = it.next();
+                int add = line.format().length() + 1;
+                if (!batch.isEmpty() && length + add > MAX_CONTENT - DROPPED_RESERVE) {
+                    break;
+                }
+                batch.add(line);
+                length += add;
+                it.remove();
+            }
+        }
+        return batch;
+    }
+
+    private String render(List<Line> batch) {
+        StringBuilder sb = new StringBuilder();
+        for (Line line : batch) {
+            sb.append(line.format()).append('\n');
+        }
+        long lost;
+        synchronized (buffer) {
+            lost = dropped;
+            dropped = 0;
+        }
+        if (lost > 0) {
+            sb.append("... ").append(lost).append(" lines dropped\n");
+        }
+        // Discord rejects the whole message above the limit
+        assert sb.length() <= MAX_CONTENT : sb.length();
+        // mentions in log messages must not ping anyone
+        return "{\"content\":" + quote(sb.toString()) + ",\"allowed_mentions\":{\"parse\":[]}}";
+    }
+
+    private CompletableFuture<SimpleHttpResponse> send(String json) {
+        return OZHttpClient.post(uri.toString(), json, ContentType.APPLICATION_JSON);
+    }
+
+    private void handleResponse(List<Line> batch, SimpleHttpResponse response, Throwable e) {
+        int status = response != null ? response.getCode() : 0;
+        if (e == null && status >= 200 && status < 300) {
+            SENT.increment();
+            return;
+        }
+        if (e == null && status == 429) {
+            // put the lines back in front and send nothing until Discord allows it again
+            RATE_LIMITED.increment();
+            bucket.pause(retryAfterNanos(response));
+            requeue(batch);
+            return;
+        }
+        FAILED.increment();
+        STATUS.error("Discord webhook " + uri.getHost() + " failed: "
+                + (e != null ? e.getClass().getTypeName() + " " + e.getMessage() : "HTTP " + status)
+                + ", " + batch.size() + " lines dropped");
+    }
+
+    /**
+     *
+     * @param response a 429 response
+     * @return the wait time from the Retry-After header or the retry_after
+     *         field of the body, 0 if there is none
+     */
+    static long retryAfterNanos(SimpleHttpResponse response) {
+        String seconds = null;
+        Header header = response.getFirstHeader("Retry-After");
+        if (header != null) {
+            seconds = header.getValue();
+        } else if (response.getBodyText() != null) {
+            Matcher m = RETRY_AFTER.matcher(response.getBodyText());
+            if (m.find()) {
+                seconds = m.group(1);
+            }
+        }
+        if (seconds == null) {
+            return 0;
+        }
+        try {
+            // capped, a broken value must not silence the webhook for good
+            return (long) (Math.min(Double.parseDouble(seconds.trim()), 600) * 1_000_000_000L);
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    private void requeue(List<Line> batch) {
+        synchronized (buffer) {
+            Map<String, Line> merged = new LinkedHashMap<>();
+            for (Line line : batch) {
+                merged.put(line.loggerName + '\u0000' + line.level + '\u0000' + line.message, line);
+            }
+            for (Map.Entry<String, Line> entry : buffer.entrySet()) {
+                Line old = merged.get(entry.getKey());
+                if (old != null) {
+                    old.count += entry.getValue().count;
+                } else {
+                    merged.put(entry.getKey(), entry.getValue());
+                }
+            }
+            buffer.clear();
+            buffer.putAll(merged);
+        }
+    }
+
+    /**
+     * Stops the periodic flush and sends what is left, ignoring the rate limit
+     *
+     * @param timeout max time to wait for the last requests
+     * @param unit
+     */
+    public void close(long timeout, TimeUnit unit) {
+        closed = true;
+        flusher.cancel(false);
+        Metrics.remove("discord.pending");
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (getPendingCount() > 0 && System.nanoTime() < deadline) {
+            List<Line> batch = takeBatch();
+            try {
+                int status = send(render(batch)).get(Math.max(1, deadline - System.nanoTime()),
+                        TimeUnit.NANOSECONDS).getCode();
+                if (status < 200 || status >= 300) {
+                    FAILED.increment();
+                    STATUS.error("Discord webhook " + uri.getHost() + " failed on close: HTTP " + status);
+                    return;
+                }
+                SENT.increment();
+            } catch (Exception e) {
+                FAILED.increment();
+                STATUS.error("Discord webhook " + uri.getHost() + " failed on close: " + e.getClass().getTypeName()
+                        + " " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    static String quote(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 16).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -0,0 +1,24 @@
+package de.omegazirkel.risingworld.tools.log;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+import org.apache.logging.log4j.Level;
+
+/**
+ * One event from a {@link LogRingBuffer}
+ */
+public record LogEntry(String loggerName, Level level, long timeMillis, String threadName, String message) {
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss.SSS")
+            .withZone(ZoneId.systemDefault());
+
+    /**
+     *
+     * @return one line like the console appender
+     */
+    public String format() {
+        return "[" + TIME.format(Instant.ofEpochMilli(timeMillis)) + "] " + String.format("%-5s", level.name()) + " "
+                + loggerName + " - " + message;
+    }
+}
@@ -0,0 +1,112 @@
+package de.omegazirkel.risingworld.tools.log;
+
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.Level;
+
+/**
+ * The last N events of one logger in a fixed, preallocated array.
+ *
+ * Writers claim a sequence number with one atomic increment and fill the slot
+ * of that number, nothing is locked or allocated. Every slot carries the
+ * sequence number it holds (seqlock): readers copy a slot and drop it if it
+ * was overwritten meanwhile, so a snapshot never blocks a writer and never
+ * returns a half written event.
+ */
+public class LogRingBuffer {
+    private final String loggerName;
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+
+    private static final class Slot {
+        // sequence number of the event in this slot, -1 while it is written
+        private volatile long sequence = -1;
+        private Level level;
+        private long timeMillis;
+        private String threadName;
+        private String message;
+    }
+
+    /**
+     *
+     * @param loggerName
+     * @param capacity   rounded up to a power of two
+     */
+    public LogRingBuffer(String loggerName, int capacity) {
+        this.loggerName = loggerName;
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = size - 1;
+    }
+
+    public String getLoggerName() {
+        return loggerName;
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     *
+     * @return events written since the start, including overwritten ones
+     */
+    public long getWritten() {
+        return next.get();
+    }
+
+    public void add(Level level, long timeMillis, String threadName, String message) {
+        long seq = next.getAndIncrement();
+        Slot slot = slots[(int) (seq & mask)];
+        slot.sequence = -1;
+        // the fields must not become visible before the slot is marked as written
+        VarHandle.storeStoreFence();
+        slot.level = level;
+        slot.timeMillis = timeMillis;
+        slot.threadName = threadName;
+        slot.message = message;
+        slot.sequence = seq;
+    }
+
+    /**
+     *
+     * @param minLevel   e.g. Level.WARN for warnings and worse, null for all
+     * @param sinceMillis events at or after this time, 0 for all
+     * @param limit      max events, the newest are kept
+     * @return matching events, oldest first
+     */
+    public List<LogEntry> snapshot(Level minLevel, long sinceMillis, int limit) {
+        List<LogEntry> result = new ArrayList<>();
+        long last = next.get() - 1;
+        long first = Math.max(0, last - mask);
+        for (long seq = last; seq >= first && result.size() < limit; seq--) {
+            Slot slot = slots[(int) (seq & mask)];
+            if (slot.sequence != seq) {
+                // overwritten by a newer event or still being written
+                continue;
+            }
+            Level level = slot.level;
+            long time = slot.timeMillis;
+            String thread = slot.threadName;
+            String message = slot.message;
+            // the copies above must be read before the sequence is checked again
+            VarHandle.acquireFence();
+            if (slot.sequence != seq) {
+                continue;
+            }
+            if (time >= sinceMillis && (minLevel == null || level.isMoreSpecificThan(minLevel))) {
+                result.add(new LogEntry(loggerName, level, time, thread, message));
+            }
+        }
+        Collections.reverse(result);
+        return result;
+    }
+}
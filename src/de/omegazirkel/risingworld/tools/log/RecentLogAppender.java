@@ -0,0 +1,158 @@
+package de.omegazirkel.risingworld.tools.log;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.config.Property;
+
+import de.omegazirkel.risingworld.tools.OZLogger;
+
+/**
+ * Keeps the last events of every OZLogger in memory, so recent logs can be
+ * queried without reading the log files.
+ *
+ * Attached to every OZLogger when it is initialized, the size per logger is
+ * set with {@code log.recent.capacity} in the tools settings.properties (0
+ * turns it off). Query it in the server console with
+ * {@code oztools logs [logger|prefix*] [level] [since] [count]} or from code:
+ *
+ * <pre>
+ * for (LogEntry entry : RecentLogAppender.query("OZ.Tools*", Level.WARN, Duration.ofMinutes(10), 50)) {
+ *     logger.console(entry.format());
+ * }
+ * </pre>
+ */
+public class RecentLogAppender extends AbstractAppender {
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private static volatile int capacity = DEFAULT_CAPACITY;
+    // buffers by logger name
+    private static final Map<String, Attachment> ATTACHED = new ConcurrentHashMap<>();
+
+    private record Attachment(OZLogger logger, RecentLogAppender appender) {
+    }
+
+    private final LogRingBuffer buffer;
+
+    private RecentLogAppender(LogRingBuffer buffer) {
+        super("Recent-" + buffer.getLoggerName(), null, null, true, Property.EMPTY_ARRAY);
+        this.buffer = buffer;
+    }
+
+    @Override
+    public void append(LogEvent event) {
+        if (event.getMarker() != null && event.getMarker().isInstanceOf(OZLogger.CONSOLE_ONLY)) {
+            return;
+        }
+        buffer.add(event.getLevel(), event.getTimeMillis(), event.getThreadName(),
+                event.getMessage().getFormattedMessage());
+    }
+
+    /**
+     * Sets the events kept per logger, existing buffers are replaced (and
+     * emptied) if the capacity changed
+     *
+     * @param newCapacity 0 to turn the buffers off
+     */
+    public static synchronized void setCapacity(int newCapacity) {
+        newCapacity = Math.max(0, newCapacity);
+        if (newCapacity == capacity) {
+            return;
+        }
+        capacity = newCapacity;
+        detachAll();
+        for (OZLogger logger : OZLogger.getInstances()) {
+            attach(logger);
+        }
+    }
+
+    public static int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Adds a buffer to the logger, called by OZLogger after its context was
+     * started
+     *
+     * @param logger
+     */
+    public static synchronized void attach(OZLogger logger) {
+        if (capacity == 0 || ATTACHED.containsKey(logger.getLoggerName())) {
+            return;
+        }
+        RecentLogAppender appender = new RecentLogAppender(new LogRingBuffer(logger.getLoggerName(), capacity));
+        appender.start();
+        if (!logger.addAppender(appender)) {
+            appender.stop();
+            return;
+        }
+        ATTACHED.put(logger.getLoggerName(), new Attachment(logger, appender));
+    }
+
+    /**
+     * Removes all buffers, called when the loggers are shut down
+     */
+    public static synchronized void detachAll() {
+        for (Attachment a : ATTACHED.values()) {
+            a.logger().removeAppender(a.appender());
+            a.appender().stop();
+        }
+        ATTACHED.clear();
+    }
+
+    /**
+     *
+     * @return names of the loggers with a buffer
+     */
+    public static List<String> getLoggerNames() {
+        List<String> names = new ArrayList<>(ATTACHED.keySet());
+        names.sort(null);
+        return names;
+    }
+
+    /**
+     *
+     * @param loggerName
+     * @return the buffer of the logger, null if it has none
+     */
+    public static LogRingBuffer getBuffer(String loggerName) {
+        Attachment a = ATTACHED.get(loggerName);
+        return a != null ? a.appender().buffer : null;
+    }
+
+    /**
+     *
+     * @param loggers  logger name, a trailing * matches a prefix, null or "*"
+     *                 for all
+     * @param minLevel e.g. Level.WARN, null for all levels
+     * @param since    only events of this last period, null for all
+     * @param limit    max events, the newest are kept
+     * @return matching events of all selected loggers, oldest first
+     */
+    public static List<LogEntry> query(String loggers, Level minLevel, Duration since, int limit) {
+        long sinceMillis = since != null ? System.currentTimeMillis() - since.toMillis() : 0;
+        List<LogEntry> result = new ArrayList<>();
+        for (Attachment a : ATTACHED.values()) {
+            if (matches(loggers, a.logger().getLoggerName())) {
+                result.addAll(a.appender().buffer.snapshot(minLevel, sinceMillis, limit));
+            }
+        }
+        result.sort(Comparator.comparingLong(LogEntry::timeMillis));
+        return result.size() > limit ? result.subList(result.size() - limit, result.size()) : result;
+    }
+
+    private static boolean matches(String pattern, String name) {
+        if (pattern == null || pattern.equals("*")) {
+            return true;
+        }
+        return pattern.endsWith("*") ? name.startsWith(pattern.substring(0, pattern.length() - 1))
+                : name.equals(pattern);
+    }
+}
@@ -0,0 +1,52 @@
+package de.omegazirkel.risingworld.tools.log;
+
+/**
+ * Token bucket rate limiter: up to {@code capacity} requests at once, refilled
+ * with {@code perMinute} tokens per minute
+ */
+final class TokenBucket {
+    private final int capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+
+    TokenBucket(int capacity, int perMinute) {
+        this.capacity = Math.max(1, capacity);
+        this.tokensPerNano = Math.max(1, perMinute) / 60_000_000_000.0;
+        this.tokens = this.capacity;
+    }
+
+    synchronized boolean tryAcquire() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Takes all tokens and stops the refill for a while, e.g. after the server
+     * answered with a rate limit
+     *
+     * @param nanos time without new tokens, 0 to only take the tokens
+     */
+    synchronized void pause(long nanos) {
+        refill();
+        tokens = Math.min(tokens, 0);
+        long resume = System.nanoTime() + Math.max(0, nanos);
+        if (resume - lastRefill > 0) {
+            lastRefill = resume;
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        long elapsed = now - lastRefill;
+        // lastRefill lies in the future while paused
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+            lastRefill = now;
+        }
+    }
+}
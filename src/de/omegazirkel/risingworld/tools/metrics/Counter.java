@@ -0,0 +1,35 @@
+package de.omegazirkel.risingworld.tools.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic counter, striped over cells so concurrent increments from many
+ * threads do not contend on one value
+ */
+public final class Counter implements Metric {
+    private final LongAdder value = new LongAdder();
+
+    Counter() {
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long n) {
+        value.add(n);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+
+    void reset() {
+        value.reset();
+    }
+
+    @Override
+    public String describe() {
+        return Long.toString(get());
+    }
+}
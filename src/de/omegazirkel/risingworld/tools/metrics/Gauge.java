@@ -0,0 +1,31 @@
+package de.omegazirkel.risingworld.tools.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Value that is read on demand, e.g. a queue size or connection state
+ */
+public final class Gauge implements Metric {
+    private final LongSupplier supplier;
+
+    Gauge(LongSupplier supplier) {
+        this.supplier = supplier;
+    }
+
+    /**
+     *
+     * @return the current value, -1 if the supplier failed
+     */
+    public long get() {
+        try {
+            return supplier.getAsLong();
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public String describe() {
+        return Long.toString(get());
+    }
+}
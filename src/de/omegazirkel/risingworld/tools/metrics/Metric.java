@@ -0,0 +1,13 @@
+package de.omegazirkel.risingworld.tools.metrics;
+
+/**
+ * A value registered in {@link Metrics}
+ */
+public interface Metric {
+
+    /**
+     *
+     * @return the current value(s) as one line, e.g. for the snapshot dump
+     */
+    String describe();
+}
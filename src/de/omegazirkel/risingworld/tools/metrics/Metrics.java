@@ -0,0 +1,201 @@
+package de.omegazirkel.risingworld.tools.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import de.omegazirkel.risingworld.tools.OZLogger;
+import de.omegazirkel.risingworld.tools.OZScheduler;
+
+/**
+ * Registry for counters, gauges and histograms of the tools and all OZ
+ * plugins. Names are dot separated and start with the subsystem or plugin,
+ * e.g. {@code ws.messages.sent} or {@code discord.chat.relayed}.
+ *
+ * Looking up a metric is a map access, keep the returned instance in a field
+ * for hot paths:
+ *
+ * <pre>
+ * private static final Counter relayed = Metrics.counter("discord.chat.relayed");
+ * ...
+ * relayed.increment();
+ * </pre>
+ *
+ * A snapshot of all values can be written periodically to a file or the
+ * {@code OZ.Tools.Metrics} log, see {@link #startDump(long, Path)}, and is
+ * shown with the console command {@code oztools metrics [prefix]}.
+ */
+public final class Metrics {
+    private static final Map<String, Metric> METRICS = new ConcurrentHashMap<>();
+
+    private static ScheduledFuture<?> dumper = null;
+
+    private Metrics() {
+    }
+
+    static OZLogger logger() {
+        return OZLogger.getInstance("OZ.Tools.Metrics");
+    }
+
+    /**
+     *
+     * @param name
+     * @return the counter registered under the name, created on first use
+     * @throws IllegalArgumentException if the name is used by another metric
+     *                                  type
+     */
+    public static Counter counter(String name) {
+        return get(name, Counter.class, Counter::new);
+    }
+
+    /**
+     *
+     * @param name
+     * @return the histogram registered under the name, created on first use
+     * @throws IllegalArgumentException if the name is used by another metric
+     *                                  type
+     */
+    public static Histogram histogram(String name) {
+        return get(name, Histogram.class, Histogram::new);
+    }
+
+    /**
+     * Registers a gauge, an existing gauge with the same name is replaced (e.g.
+     * after a plugin reload)
+     *
+     * @param name
+     * @param supplier called whenever the value is read, has to be thread-safe
+     *                 and cheap
+     * @return
+     */
+    public static Gauge gauge(String name, LongSupplier supplier) {
+        Gauge gauge = new Gauge(supplier);
+        Metric previous = METRICS.put(name, gauge);
+        if (previous != null && !(previous instanceof Gauge)) {
+            METRICS.put(name, previous);
+            throw new IllegalArgumentException("Metric " + name + " is a " + previous.getClass().getSimpleName());
+        }
+        return gauge;
+    }
+
+    private static <T extends Metric> T get(String name, Class<T> type, Supplier<T> factory) {
+        Metric metric = METRICS.get(name);
+        if (metric == null) {
+            metric = METRICS.computeIfAbsent(name, k -> factory.get());
+        }
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException("Metric " + name + " is a " + metric.getClass().getSimpleName());
+        }
+        return type.cast(metric);
+    }
+
+    public static void remove(String name) {
+        METRICS.remove(name);
+    }
+
+    /**
+     * Removes all metrics of a plugin, e.g. in onDisable
+     *
+     * @param prefix
+     */
+    public static void removeAll(String prefix) {
+        METRICS.keySet().removeIf(name -> name.startsWith(prefix));
+    }
+
+    /**
+     *
+     * @param prefix empty for all metrics
+     * @return name to current value, sorted by name
+     */
+    public static SortedMap<String, String> snapshot(String prefix) {
+        SortedMap<String, String> result = new TreeMap<>();
+        for (Map.Entry<String, Metric> entry : METRICS.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                result.put(entry.getKey(), entry.getValue().describe());
+            }
+        }
+        return result;
+    }
+
+    /**
+     *
+     * @param prefix empty for all metrics
+     * @return one "name value" line per metric
+     */
+    public static List<String> format(String prefix) {
+        SortedMap<String, String> snapshot = snapshot(prefix);
+        int width = 0;
+        for (String name : snapshot.keySet()) {
+            width = Math.max(width, name.length());
+        }
+        List<String> lines = new ArrayList<>(snapshot.size());
+        for (Map.Entry<String, String> entry : snapshot.entrySet()) {
+            lines.add(String.format("%-" + width + "s  %s", entry.getKey(), entry.getValue()));
+        }
+        return lines;
+    }
+
+    /**
+     * Writes a snapshot of all metrics periodically, a running dump is replaced
+     *
+     * @param intervalSeconds 0 stops the dump
+     * @param file            replaced on every dump, null writes to the
+     *                        OZ.Tools.Metrics log
+     */
+    public static synchronized void startDump(long intervalSeconds, Path file) {
+        stopDump();
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        dumper = OZScheduler.getInstance("OZ.Tools").scheduleWithFixedDelay(() -> dump(file), intervalSeconds,
+                intervalSeconds, TimeUnit.SECONDS);
+        logger().info("Metrics dump every " + intervalSeconds + "s to " + (file != null ? file : "log"));
+    }
+
+    public static synchronized void stopDump() {
+        if (dumper != null) {
+            dumper.cancel(false);
+            dumper = null;
+        }
+    }
+
+    /**
+     * Writes a snapshot of all metrics
+     *
+     * @param file replaced atomically, null writes to the OZ.Tools.Metrics log
+     */
+    public static void dump(Path file) {
+        List<String> lines = format("");
+        if (file == null) {
+            logger().info("Metrics snapshot (" + lines.size() + ")\n  " + String.join("\n  ", lines));
+            return;
+        }
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path tmp = parent.resolve(file.getFileName() + ".tmp");
+            StringBuilder sb = new StringBuilder("# ").append(Instant.now()).append('\n');
+            for (String line : lines) {
+                sb.append(line).append('\n');
+            }
+            Files.writeString(tmp, sb, StandardCharsets.UTF_8);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            logger().error("Metrics dump to " + file + " failed (" + e.getClass().getTypeName() + "): "
+                    + e.getMessage());
+        }
+    }
+}